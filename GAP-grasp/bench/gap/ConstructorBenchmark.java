@@ -0,0 +1,76 @@
+package gap;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Solution generators. The problem is cleared in each invocation, which costs
+ * a single pass over the jobs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructorBenchmark {
+
+    /**
+     * Instances for the random and peckish generators. Their backtracking is
+     * exponential on the tight instances, e.g. gap12.txt:4, so only the ones
+     * with a loose capacity are used.
+     */
+    @State(Scope.Benchmark)
+    public static class LooseProblemState {
+
+        @Param({"gap1.txt:1", "gap9.txt:5", "C:20x200"})
+        public String looseInstance;
+        public GapProblem problem;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            problem = ProblemState.load(looseInstance, 42);
+            problem.setSeed(42);
+        }
+    }
+
+    @Benchmark
+    public boolean randomSolution(LooseProblemState state) {
+        state.problem.clear();
+        return state.problem.generateRandomSolution();
+    }
+
+    @Benchmark
+    public boolean greedySolution(ProblemState state) {
+        state.problem.clear();
+        return state.problem.generateGreedySolution();
+    }
+
+    @Benchmark
+    public boolean timeGreedySolution(ProblemState state) {
+        state.problem.clear();
+        return state.problem.generateTimeGreedySolution();
+    }
+
+    @Benchmark
+    public boolean peckishSolution(LooseProblemState state) {
+        state.problem.clear();
+        return state.problem.generatePeckishSolution();
+    }
+
+    @Benchmark
+    public GapSolution graspInitialSolution(ProblemState state) {
+        return state.problem.generateInitialSolutionForGrasp(.5, false, 5000);
+    }
+}
@@ -0,0 +1,70 @@
+package gap;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full GRASP with a fixed number of iterations, sequential (0 threads) and on
+ * pools with different numbers of threads. The run stops early if the lower
+ * bound is reached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraspBenchmark {
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int threads;
+    @Param({"50"})
+    public int iterations;
+    private SolverPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if (threads > 0) {
+            pool = new SolverPool(threads);
+        }
+    }
+
+    /**
+     * Each run starts from a cleared problem, so that the runs do not add up
+     * the solutions and backtracks of the previous ones. A run takes
+     * milliseconds, so the invocation level setup does not skew the time.
+     */
+    @Setup(Level.Invocation)
+    public void clear(ProblemState state) {
+        state.problem.clear();
+    }
+
+        @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public GapSolution grasp(ProblemState state) throws InterruptedException, ExecutionException {
+        if (pool == null) {
+            state.problem.generateGRASPSolution(iterations, .5);
+            return state.problem.getSolution();
+        }
+        return pool.solve(state.problem, iterations, .5, 0).get();
+    }
+}
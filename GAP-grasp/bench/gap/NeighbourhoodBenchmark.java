@@ -0,0 +1,71 @@
+package gap;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Neighbourhood scans of GapSolution and the local search. The scans are
+ * evaluated on a fixed random assignment, the local search starts from the
+ * time greedy solution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighbourhoodBenchmark {
+
+    private GapSolution assignment;
+    private GapSolution start;
+    private Move move;
+
+    @Setup
+    public void setup(ProblemState state) {
+        assignment = state.randomAssignment();
+        GapProblem problem = new GapProblem(state.problem.getWorkersCount(), state.problem.getJobsCount(),
+                state.problem.getSolution().getSettings());
+        problem.generateTimeGreedySolution();
+        start = problem.getSolution();
+        move = new Move(0);
+    }
+
+    @Benchmark
+    public Move jobMove() {
+        return assignment.getBestJobMove(false);
+    }
+
+    @Benchmark
+    public Move twoJobSwap() {
+        return assignment.getBestTwoJobSwap(false);
+    }
+
+    @Benchmark
+    public GapSolution allJobsSwap() {
+        return assignment.getBestAllJobsSwapNeihgbour(false);
+    }
+
+    @Benchmark
+    public Move bestMove() {
+        return assignment.getBestMove(false, false, move);
+    }
+
+    @Benchmark
+    public Move bestMoveParallel() {
+        return assignment.getBestMove(false, true, move);
+    }
+
+    @Benchmark
+    public GapSolution localSearch(ProblemState state) {
+        return state.problem.localSearch(start);
+    }
+}
@@ -0,0 +1,47 @@
+package gap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of a problem from the bundled OR-Library files, streamed and memory mapped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"gap1.txt:1", "gap1.txt:5", "gap12.txt:4"})
+    public String instance;
+    @Param({"false", "true"})
+    public boolean mapped;
+    private File file;
+    private int position;
+
+    @Setup
+    public void setup() {
+        int colon = instance.lastIndexOf(':');
+        file = new File(System.getProperty("gap.data", "data"), instance.substring(0, colon));
+        position = Integer.parseInt(instance.substring(colon + 1));
+    }
+
+    @Benchmark
+    public GapProblem parseProblem() throws IOException {
+        return new GapParser(file, mapped).parseProblem(position);
+    }
+}
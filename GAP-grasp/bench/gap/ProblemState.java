@@ -0,0 +1,61 @@
+package gap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Problem instance shared by the benchmarks. An instance is either a problem
+ * of a bundled OR-Library file, given as file:position, or a generated one,
+ * given as type:workersxjobs (see GapGenerator). The bundled files are read from the directory in the
+ * gap.data property, data by default.
+ */
+@State(Scope.Benchmark)
+public class ProblemState {
+
+    @Param({"gap1.txt:1", "gap9.txt:5", "gap12.txt:4", "D:20x200", "D:40x800"})
+    public String instance;
+    /** Seed of the problem random generator and of the generated instances. */
+    @Param({"42"})
+    public long seed;
+    public GapProblem problem;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        problem = load(instance, seed);
+        problem.setSeed(seed);
+    }
+
+    /**
+     * A problem with a random assignment of all jobs, the same for each trial.
+     */
+    public GapSolution randomAssignment() {
+        SplittableRandom generator = new SplittableRandom(seed);
+        GapSolution gs = new GapSolution(problem.getJobsCount(), problem.getWorkersCount(),
+                problem.getSolution().getSettings());
+        for (int i = 0; i < gs.getJobsCount(); i++) {
+            gs.assign(i, generator.nextInt(gs.getWorkersCount()), true);
+        }
+        return gs;
+    }
+
+    public static GapProblem load(String instance, long seed) throws IOException {
+        if (instance.matches("[A-Ea-e]:\\d+x\\d+")) {
+            String[] size = instance.substring(2).split("x");
+            return new GapGenerator(instance.charAt(0), seed).generate(Integer.parseInt(size[0]),
+                    Integer.parseInt(size[1]));
+        }
+        int colon = instance.lastIndexOf(':');
+        File file = new File(System.getProperty("gap.data", "data"), instance.substring(0, colon));
+        GapProblem problem = new GapParser(file).parseProblem(Integer.parseInt(instance.substring(colon + 1)));
+        if (problem == null) {
+            throw new IOException("Problem " + instance + " not found");
+        }
+        return problem;
+    }
+}
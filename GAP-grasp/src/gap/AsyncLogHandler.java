@@ -0,0 +1,148 @@
+package gap;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Log handler which passes the records to another handler on a background
+ * thread, so that logging solver threads never wait for the output. The
+ * records are kept in a bounded queue, when it is full new records are
+ * dropped and counted instead of blocking the logging thread. Records are
+ * formatted by the target handler on the background thread, the name of the
+ * thread which logged the record is kept with it for the formatter. The
+ * number of dropped records is logged by the next flush().
+ */
+public class AsyncLogHandler extends Handler {
+
+    private final Handler target;
+    private final BlockingQueue<Entry> queue;
+    /** Name of the thread which logged the record being published, used only
+     * by the writer thread. */
+    private String publishedThread;
+    /** Records queued and not yet published. */
+    private final AtomicLong pending = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    /** Dropped records already reported, guarded by idle. */
+    private long reportedDropped = 0;
+    /** Notified when the queue becomes empty. The writer holds it only to
+     * notify and publish() only when it drops a record, never during the output. */
+    private final Object idle = new Object();
+    private final Thread writer;
+
+    /**
+     * @param _target Handler the records are published to.
+     * @param capacity Maximum number of records waiting for the output.
+     */
+    public AsyncLogHandler(Handler _target, int capacity) {
+        target = _target;
+        queue = new ArrayBlockingQueue<Entry>(capacity);
+        writer = new Thread(new Runnable() {
+
+            public void run() {
+                try {
+                    while (true) {
+                        Entry entry = queue.take();
+                        publishedThread = entry.thread;
+                        target.publish(entry.record);
+                        if (pending.decrementAndGet() == 0) {
+                            target.flush();
+                            synchronized (idle) {
+                                idle.notifyAll();
+                            }
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    // closed
+                }
+            }
+        }, "gap-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(new Entry(record, Thread.currentThread().getName()))) {
+            dropped.incrementAndGet();
+            if (pending.decrementAndGet() == 0) {
+                synchronized (idle) {
+                    idle.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Name of the thread which logged the record being published. Valid only
+     * in the target handler and its formatter while they publish a record.
+     */
+    public String getPublishedThread() {
+        return publishedThread;
+    }
+
+    /**
+     * Number of records dropped because the queue was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Log a warning with the number of records dropped since the last flush,
+     * wait until all queued records are published and flush the target.
+     */
+    @Override
+    public void flush() {
+        synchronized (idle) {
+            try {
+                awaitIdle();
+                long newlyDropped = dropped.get() - reportedDropped;
+                if (newlyDropped > 0) {
+                    reportedDropped += newlyDropped;
+                    publish(new LogRecord(Level.WARNING, "Log: " + newlyDropped
+                            + " records dropped, the output was too slow."));
+                    awaitIdle();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        target.flush();
+    }
+
+    /**
+     * Wait until the queue is empty, the caller must hold idle.
+     */
+    private void awaitIdle() throws InterruptedException {
+        while (pending.get() > 0 && writer.isAlive()) {
+            idle.wait(100);
+        }
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        flush();
+        writer.interrupt();
+        target.close();
+    }
+
+    /** Queued record with the name of the thread which logged it. */
+    private static class Entry {
+
+        final LogRecord record;
+        final String thread;
+
+        Entry(LogRecord _record, String _thread) {
+            record = _record;
+            thread = _thread;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package gap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Solver of all problems of one or more files by GRASP. Several problems are
+ * solved at once, each on one thread or, if more threads per problem are
+ * requested, on its own SolverPool. The problems are read one by one while the
+ * previous ones are solved and at most twice as many problems as are solved at
+ * once are kept in memory, so files of any size can be solved. The result of
+ * each problem is written to a BatchWriter as soon as the problem is finished,
+ * so the results are in the order of completion.
+ *
+ * Each problem gets its own seed drawn from the seed of the batch in the order
+ * of the problems, so the results of a seeded batch do not depend on the
+ * scheduling.
+ */
+public class BatchSolver {
+
+    /** Result of one problem of the batch. */
+    public static class Result {
+
+        public static final String SOLVED = "solved";
+        /** The problem is infeasible or no solution was found in time. */
+        public static final String NO_SOLUTION = "no solution";
+        /** The problem could not be read or solved. */
+        public static final String ERROR = "error";
+        private final String file;
+        private final int position;
+        private final int workersCount;
+        private final int jobsCount;
+        private final String status;
+        private final int cost;
+        private final int lowerBound;
+        private final long runtime;
+        private final int backtracks;
+        private final String message;
+
+        Result(String _file, int _position, int _workersCount, int _jobsCount, String _status, int _cost,
+                int _lowerBound, long _runtime, int _backtracks, String _message) {
+            file = _file;
+            position = _position;
+            workersCount = _workersCount;
+            jobsCount = _jobsCount;
+            status = _status;
+            cost = _cost;
+            lowerBound = _lowerBound;
+            runtime = _runtime;
+            backtracks = _backtracks;
+            message = _message;
+        }
+
+        static Result error(File file, int position, String message) {
+            return new Result(file.getPath(), position, 0, 0, ERROR, -1, -1, 0, 0, message);
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * Position of the problem in the file, starting from 1, 0 if the whole file failed.
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        public int getWorkersCount() {
+            return workersCount;
+        }
+
+        public int getJobsCount() {
+            return jobsCount;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * Cost of the best solution, -1 if there is none.
+         */
+        public int getCost() {
+            return cost;
+        }
+
+        /**
+         * Lower bound of the cost, -1 if the problem was not read.
+         */
+        public int getLowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * Solving time in milliseconds.
+         */
+        public long getRuntime() {
+            return runtime;
+        }
+
+        public int getBacktracks() {
+            return backtracks;
+        }
+
+        /**
+         * Error message, empty if there is no error.
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private static final AtomicInteger batchCount = new AtomicInteger(0);
+    /** Number of problems solved at once */
+    private int instances;
+    /** Number of threads of each problem, problems are solved sequentially if 1 */
+    private int threads;
+    /** Time limit of each problem in milliseconds, no limit if not positive */
+    private long timeLimit;
+    /** Generator of the seeds of the problems */
+    private SplittableRandom random;
+
+    /**
+     * @param _instances Number of problems solved at once.
+     * @param _threads Number of threads solving each problem.
+     * @param _timeLimit Time limit of each problem in milliseconds, no limit if not positive.
+     */
+    public BatchSolver(int _instances, int _threads, long _timeLimit) {
+        instances = Math.max(_instances, 1);
+        threads = Math.max(_threads, 1);
+        timeLimit = _timeLimit;
+        random = new SplittableRandom();
+    }
+
+    /**
+     * Set the seed of the batch, the same seed gives the same results.
+     */
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Solve all problems of the files. Files which can not be opened and damaged
+     * problems are reported as errors and skipped.
+     * @param files Input files in the text or binary format.
+     * @param mapped True if the text files should be memory mapped.
+     * @param output Writer of the results.
+     * @return Number of results written.
+     * @throws IOException If the results could not be written.
+     */
+    public int solve(List<File> files, boolean mapped, final BatchWriter output) throws IOException, InterruptedException {
+        final int batchId = batchCount.incrementAndGet();
+        ExecutorService executor = Executors.newFixedThreadPool(instances, new ThreadFactory() {
+
+            private AtomicInteger threadCount = new AtomicInteger(0);
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "gap-batch-" + batchId + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        /** Pools of the problems solved in parallel, one for each running problem. */
+        final BlockingQueue<SolverPool> pools = new LinkedBlockingQueue<SolverPool>();
+        if (threads > 1) {
+            for (int i = 0; i < instances; i++) {
+                pools.add(new SolverPool(threads));
+            }
+        }
+        /** Problems read and not yet finished. */
+        final Semaphore pending = new Semaphore(2 * instances);
+        final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+        int written = 0;
+        try {
+            for (final File file : files) {
+                if (failure.get() != null) {
+                    break;
+                }
+                GapParser.ProblemIterator problems;
+                try {
+                    problems = new GapParser(file, mapped).iterator();
+                } catch (IOException ex) {
+                    output.write(Result.error(file, 0, "File " + file + " can not be read: " + ex.getMessage()));
+                    written++;
+                    continue;
+                }
+                try {
+                    int position = 0;
+                    while (problems.hasNext() && failure.get() == null) {
+                        position++;
+                        pending.acquire();
+                        final GapProblem problem;
+                        try {
+                            problem = problems.next();
+                        } catch (UncheckedIOException ex) {
+                            pending.release();
+                            output.write(Result.error(file, position, ex.getCause().getMessage()));
+                            written++;
+                            continue;
+                        }
+                        problem.setSeed(random.nextLong());
+                        final int problemPosition = position;
+                        executor.execute(new Runnable() {
+
+                            public void run() {
+                                try {
+                                    output.write(solve(file, problemPosition, problem, pools));
+                                } catch (IOException ex) {
+                                    failure.compareAndSet(null, ex);
+                                } finally {
+                                    pending.release();
+                                }
+                            }
+                        });
+                        written++;
+                    }
+                } finally {
+                    problems.close();
+                }
+            }
+            /** Wait until all problems are finished. */
+            pending.acquire(2 * instances);
+        } finally {
+            executor.shutdownNow();
+            for (SolverPool pool : pools) {
+                pool.shutdownNow();
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return written;
+    }
+
+    /**
+     * Solve one problem, errors of the solver are reported in the result.
+     */
+    private Result solve(File file, int position, GapProblem problem, BlockingQueue<SolverPool> pools) {
+        long runtime = System.nanoTime();
+        boolean solved;
+        try {
+            if (threads > 1) {
+                SolverPool pool = pools.take();
+                try {
+                    solved = problem.generateParalelGRASPSolution(pool, timeLimit);
+                } finally {
+                    pools.add(pool);
+                }
+            } else {
+                solved = problem.generateGRASPSolution(problem.getDefaultGRASPIterations(), .5, timeLimit);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Result.error(file, position, "Interrupted");
+        } catch (RuntimeException ex) {
+            return Result.error(file, position, ex.toString());
+        }
+        runtime = (System.nanoTime() - runtime) / 1000000L;
+        return new Result(file.getPath(), position, problem.getWorkersCount(), problem.getJobsCount(),
+                solved ? Result.SOLVED : Result.NO_SOLUTION, solved ? problem.getSolution().getGlobalCost() : -1,
+                problem.getCostLowerBound(), runtime, problem.getBacktracksCount(), "");
+    }
+}
@@ -0,0 +1,134 @@
+package gap;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer of the results of a BatchSolver, either as CSV with a header line or
+ * as JSON lines, one object per problem. Each result is flushed as soon as it
+ * is written, so the output can be followed while the batch runs. The writer
+ * is thread-safe.
+ */
+public class BatchWriter implements Closeable {
+
+    private static final String[] COLUMNS = {"file", "position", "workers", "jobs", "status", "cost",
+        "lowerBound", "runtime", "backtracks", "message"};
+    private Writer writer;
+    /** Write JSON lines instead of CSV */
+    private boolean json;
+
+    /**
+     * @param _writer Output of the results.
+     * @param _json True to write JSON lines, false to write CSV.
+     */
+    public BatchWriter(Writer _writer, boolean _json) throws IOException {
+        writer = _writer;
+        json = _json;
+        if (!json) {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(COLUMNS[i]);
+            }
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    /**
+     * Open a file for the results, JSON lines are written if the name ends
+     * with .jsonl or .json, CSV otherwise.
+     * @param file Output file, it is overwritten.
+     */
+    public static BatchWriter open(File file) throws IOException {
+        String name = file.getName();
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".json");
+        return new BatchWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8)), json);
+    }
+
+    public synchronized void write(BatchSolver.Result result) throws IOException {
+        String[] values = {result.getFile(), Integer.toString(result.getPosition()),
+            Integer.toString(result.getWorkersCount()), Integer.toString(result.getJobsCount()), result.getStatus(),
+            Integer.toString(result.getCost()), Integer.toString(result.getLowerBound()),
+            Long.toString(result.getRuntime()), Integer.toString(result.getBacktracks()), result.getMessage()};
+        /** Columns which are written as strings. */
+        boolean[] text = {true, false, false, false, true, false, false, false, false, true};
+        if (json) {
+            writer.write('{');
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write('"' + COLUMNS[i] + "\":");
+                writer.write(text[i] ? jsonString(values[i]) : values[i]);
+            }
+            writer.write("}\n");
+        } else {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(text[i] ? csvString(values[i]) : values[i]);
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Quote the value if it contains a separator, a quote or a line end.
+     */
+    static String csvString(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * The value as a quoted JSON string with the special characters escaped.
+     */
+    static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,119 @@
+package gap;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Trace of the improvements of the incumbent of GRASP runs, used for
+ * time-to-target plots. Each event has the time from the start of the run,
+ * the number of iterations started by all threads when the solution was
+ * found, the name of the thread and the cost. Only feasible solutions are
+ * offered to the incumbent, so all events are feasible.
+ *
+ * The events are kept in a ring buffer of a fixed capacity allocated up front,
+ * when it is full the oldest events are overwritten. Events are recorded only
+ * when the incumbent improves, so the trace does not slow down the search.
+ */
+public class ConvergenceTrace {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private final long[] elapsedNanos;
+    private final int[] iterations;
+    private final String[] threads;
+    private final int[] costs;
+    /** Number of events recorded, including the overwritten ones */
+    private long recorded;
+
+    public ConvergenceTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Maximum number of events kept.
+     */
+    public ConvergenceTrace(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Trace: Wrong capacity " + capacity);
+        }
+        elapsedNanos = new long[capacity];
+        iterations = new int[capacity];
+        threads = new String[capacity];
+        costs = new int[capacity];
+        recorded = 0;
+    }
+
+    /**
+     * Record an improvement of the incumbent by the current thread.
+     * @param elapsed Time from the start of the run in nanoseconds.
+     * @param iteration Number of iterations started when the solution was found.
+     * @param gs The new incumbent.
+     */
+    public synchronized void record(long elapsed, int iteration, GapSolution gs) {
+        int pos = (int) (recorded % elapsedNanos.length);
+        elapsedNanos[pos] = elapsed;
+        iterations[pos] = iteration;
+        threads[pos] = Thread.currentThread().getName();
+        costs[pos] = gs.getGlobalCost();
+        recorded++;
+    }
+
+    /**
+     * Number of events kept in the buffer.
+     */
+    public synchronized int size() {
+        return (int) Math.min(recorded, elapsedNanos.length);
+    }
+
+    /**
+     * Number of events which were overwritten because the buffer was full.
+     */
+    public synchronized long getDropped() {
+        return recorded - size();
+    }
+
+    public synchronized void clear() {
+        recorded = 0;
+    }
+
+    /**
+     * Write the events from the oldest one, as JSON lines if json is true, as
+     * CSV with a header line otherwise.
+     */
+    public synchronized void write(Writer writer, boolean json) throws IOException {
+        if (!json) {
+            writer.write("elapsedNanos,iteration,thread,cost\n");
+        }
+        int size = size();
+        long first = recorded - size;
+        for (long i = first; i < recorded; i++) {
+            int pos = (int) (i % elapsedNanos.length);
+            if (json) {
+                writer.write("{\"elapsedNanos\":" + elapsedNanos[pos] + ",\"iteration\":" + iterations[pos]
+                        + ",\"thread\":" + BatchWriter.jsonString(threads[pos]) + ",\"cost\":" + costs[pos] + "}\n");
+            } else {
+                writer.write(elapsedNanos[pos] + "," + iterations[pos] + "," + BatchWriter.csvString(threads[pos])
+                        + "," + costs[pos] + "\n");
+            }
+        }
+    }
+
+    /**
+     * Write the events to a file, as JSON lines if its name ends with .jsonl
+     * or .json, as CSV otherwise.
+     * @param file Output file, it is overwritten.
+     */
+    public void write(File file) throws IOException {
+        String name = file.getName();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            write(writer, name.endsWith(".jsonl") || name.endsWith(".json"));
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package gap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of GAP problems, loaded without parsing. All values are
+ * little-endian 32 bit integers:
+ *
+ * - magic number "GAPB" and format version
+ * - number of problems
+ * - for each problem in turn:
+ *   number of workers (m), number of jobs (n), CRC32 checksum of the values
+ *   costs (m x n, worker-major), times (m x n, worker-major), capacities (m)
+ *
+ * The file is memory mapped and the settings of the problems are backed
+ * directly by the mapping, the values are not copied.
+ */
+public class GapBinary {
+
+    /** "GAPB" in little-endian */
+    private static final int MAGIC = 0x42504147;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 12;
+    private static final int PROBLEM_HEADER = 12;
+
+    File file;
+    /** The mapped file */
+    private ByteBuffer mappedFile;
+    /** Offsets of the problem headers in the file */
+    private long[] problemOffsets;
+    /** Verify checksums of the loaded problems */
+    private boolean verify;
+
+    /**
+     * Open the binary file and index its problems.
+     * @param _file Binary file.
+     * @param _verify True if the checksums of the problems should be verified
+     *  when they are loaded.
+     */
+    public GapBinary(File _file, boolean _verify) throws FileNotFoundException, IOException {
+        file = _file;
+        verify = _verify;
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Parser: File " + file + " is too large to be mapped");
+            }
+            mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+        mappedFile.order(ByteOrder.LITTLE_ENDIAN);
+        if (mappedFile.limit() < FILE_HEADER || mappedFile.getInt(0) != MAGIC) {
+            throw new IOException("Parser: File " + file + " is not a binary GAP file");
+        }
+        if (mappedFile.getInt(4) != VERSION) {
+            throw new IOException("Parser: Unsupported version " + mappedFile.getInt(4) + " of binary GAP file");
+        }
+        int count = mappedFile.getInt(8);
+        if (count < 0 || count > (mappedFile.limit() - FILE_HEADER) / PROBLEM_HEADER) {
+            throw new IOException("Parser: Wrong number of problems " + count + " in binary file " + file);
+        }
+        problemOffsets = new long[count];
+        long offset = FILE_HEADER;
+        for (int i = 0; i < count; i++) {
+            if (offset + PROBLEM_HEADER > mappedFile.limit()) {
+                throw new IOException("Parser: Binary file " + file + " is truncated");
+            }
+            problemOffsets[i] = offset;
+            long m = mappedFile.getInt((int) offset);
+            long n = mappedFile.getInt((int) offset + 4);
+            if (m <= 0 || n <= 0) {
+                throw new IOException("Parser: Wrong size " + m + "x" + n + " of problem " + (i + 1)
+                        + " in binary file " + file);
+            }
+            /** The sizes are checked before they are used, the checksum only
+             * covers the values. m * n fits in a long, the values must fit in
+             * the rest of the file. */
+            long remaining = mappedFile.limit() - offset - PROBLEM_HEADER;
+            if (m * n > remaining / 8 || 4 * (2 * m * n + m) > remaining) {
+                throw new IOException("Parser: Binary file " + file + " is truncated");
+            }
+            offset += PROBLEM_HEADER + 4 * (2 * m * n + m);
+        }
+    }
+
+    /**
+     * Determines whether the file is in the binary format.
+     */
+    public static boolean isBinary(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            if (in.length() < 4) {
+                return false;
+            }
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        } finally {
+            in.close();
+        }
+    }
+
+    public int getCount() {
+        return problemOffsets.length;
+    }
+
+    /**
+     * Load a problem from the file.
+     * @param pos Position of the problem in the file, starting from 1.
+     * @return The problem or null if there is no such problem in the file.
+     * @throws IOException If the checksum of the problem does not match.
+     */
+    public GapProblem parseProblem(int pos) throws IOException {
+        if (pos < 1 || pos > problemOffsets.length) {
+            return null;
+        }
+        int offset = (int) problemOffsets[pos - 1];
+        int workersCount = mappedFile.getInt(offset);
+        int jobCount = mappedFile.getInt(offset + 4);
+        int checksum = mappedFile.getInt(offset + 8);
+        int matrixSize = workersCount * jobCount;
+
+        ByteBuffer values = slice(offset + PROBLEM_HEADER, 4 * (2 * matrixSize + workersCount));
+        if (verify) {
+            CRC32 crc = new CRC32();
+            crc.update(values.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Parser: Checksum of problem " + pos + " does not match");
+            }
+        }
+        IntBuffer costs = slice(offset + PROBLEM_HEADER, 4 * matrixSize).asIntBuffer();
+        IntBuffer times = slice(offset + PROBLEM_HEADER + 4 * matrixSize, 4 * matrixSize).asIntBuffer();
+        IntBuffer limits = slice(offset + PROBLEM_HEADER + 8 * matrixSize, 4 * workersCount).asIntBuffer();
+        GapSettings settings = new GapSettings(workersCount, jobCount, costs, times, limits);
+        return new GapProblem(workersCount, jobCount, settings);
+    }
+
+    /**
+     * Read only little-endian view of a part of the mapped file.
+     */
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = mappedFile.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Write the problems to a binary file.
+     * @param out Output file, it is overwritten.
+     * @param problems Problems to write.
+     * @return Number of problems written.
+     */
+    public static int write(File out, Iterator<GapProblem> problems) throws IOException {
+        FileChannel channel = new RandomAccessFile(out, "rw").getChannel();
+        try {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(0).flip();
+            writeFully(channel, header);
+            int count = 0;
+            while (problems.hasNext()) {
+                write(channel, problems.next().getSolution().getSettings());
+                count++;
+            }
+            /** The number of problems is known only at the end. */
+            header.clear();
+            header.putInt(count).flip();
+            channel.position(8);
+            writeFully(channel, header);
+            return count;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void write(FileChannel channel, GapSettings settings) throws IOException {
+        int workersCount = settings.getWorkersCount();
+        int jobCount = settings.getJobsCount();
+        ByteBuffer values = ByteBuffer.allocate(4 * (2 * workersCount * jobCount + workersCount)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < workersCount; i++) {
+            for (int j = 0; j < jobCount; j++) {
+                values.putInt(settings.getCost(i, j));
+            }
+        }
+        for (int i = 0; i < workersCount; i++) {
+            for (int j = 0; j < jobCount; j++) {
+                values.putInt(settings.getTime(i, j));
+            }
+        }
+        for (int i = 0; i < workersCount; i++) {
+            values.putInt(settings.getLimitTime(i));
+        }
+        values.flip();
+        CRC32 crc = new CRC32();
+        crc.update(values.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(PROBLEM_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(workersCount).putInt(jobCount).putInt((int) crc.getValue()).flip();
+        writeFully(channel, header);
+        writeFully(channel, values);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
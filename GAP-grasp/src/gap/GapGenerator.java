@@ -0,0 +1,138 @@
+package gap;
+
+import java.nio.IntBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Generator of random GAP instances of the standard types A to E used in the
+ * literature (Chu and Beasley; Laguna et al. for type E). Times r and costs c
+ * of worker i and job j and capacities b of the workers are:
+ * - A: r from U[5,25], c from U[10,50], b = 9 n/m + 0.4 max_i sum of r_ij over
+ *   the jobs j whose cheapest worker is i;
+ * - B: r and c as for A, b = 0.7 times b of type A;
+ * - C: r and c as for A, b = 0.8 sum_j r_ij / m;
+ * - D: r from U[1,100], c = 111 - r + e with e from U[-10,10], b as for C;
+ * - E: r = 1 - 10 ln(u) with u from U(0,1], c = 1000 / r - 10 e with e from
+ *   U[0,1], b as for C.
+ * Values are truncated to integers and costs of type E are at least 1. The same
+ * seed gives the same instances.
+ */
+public class GapGenerator {
+
+    private char type;
+    private SplittableRandom random;
+
+    /**
+     * @param _type Type of the instances, A to E.
+     * @param seed Seed of the random generator.
+     */
+    public GapGenerator(char _type, long seed) {
+        type = Character.toUpperCase(_type);
+        if (type < 'A' || type > 'E') {
+            throw new IllegalArgumentException("Generator: Unknown instance type " + _type);
+        }
+        random = new SplittableRandom(seed);
+    }
+
+    public char getType() {
+        return type;
+    }
+
+    /**
+     * Generate a problem of the given size.
+     * @param workersCount Number of workers.
+     * @param jobsCount Number of jobs.
+     * @return The problem, its values are stored in worker-major arrays.
+     */
+    public GapProblem generate(int workersCount, int jobsCount) {
+        if (workersCount <= 0 || jobsCount <= 0) {
+            throw new IllegalArgumentException("Generator: Wrong problem size " + workersCount + "x" + jobsCount);
+        }
+        int[] cost = new int[workersCount * jobsCount];
+        int[] time = new int[workersCount * jobsCount];
+        int[] limit = new int[workersCount];
+        for (int i = 0; i < workersCount * jobsCount; i++) {
+            switch (type) {
+                case 'D':
+                    time[i] = random.nextInt(1, 101);
+                    cost[i] = 111 - time[i] + random.nextInt(-10, 11);
+                    break;
+                case 'E':
+                    time[i] = (int) (1 - 10 * Math.log(1 - random.nextDouble()));
+                    cost[i] = Math.max((int) (1000.0 / time[i] - 10 * random.nextDouble()), 1);
+                    break;
+                default:
+                    time[i] = random.nextInt(5, 26);
+                    cost[i] = random.nextInt(10, 51);
+                    break;
+            }
+        }
+        if (type == 'A' || type == 'B') {
+            /** Time of the jobs assigned to their cheapest workers. */
+            long[] cheapestTime = new long[workersCount];
+            for (int j = 0; j < jobsCount; j++) {
+                int best = 0;
+                for (int i = 1; i < workersCount; i++) {
+                    if (cost[i * jobsCount + j] < cost[best * jobsCount + j]) {
+                        best = i;
+                    }
+                }
+                cheapestTime[best] += time[best * jobsCount + j];
+            }
+            long max = 0;
+            for (int i = 0; i < workersCount; i++) {
+                max = Math.max(max, cheapestTime[i]);
+            }
+            double capacity = 9.0 * jobsCount / workersCount + 0.4 * max;
+            if (type == 'B') {
+                capacity *= 0.7;
+            }
+            for (int i = 0; i < workersCount; i++) {
+                limit[i] = (int) capacity;
+            }
+        } else {
+            for (int i = 0; i < workersCount; i++) {
+                long sum = 0;
+                for (int j = 0; j < jobsCount; j++) {
+                    sum += time[i * jobsCount + j];
+                }
+                limit[i] = (int) (0.8 * sum / workersCount);
+            }
+        }
+        GapSettings settings = new GapSettings(workersCount, jobsCount, IntBuffer.wrap(cost),
+                IntBuffer.wrap(time), IntBuffer.wrap(limit));
+        return new GapProblem(workersCount, jobsCount, settings);
+    }
+
+    /**
+     * Generate problems of the given size one by one, so that large instances
+     * can be written without keeping all of them in memory.
+     * @param count Number of problems.
+     * @param workersCount Number of workers.
+     * @param jobsCount Number of jobs.
+     */
+    public Iterator<GapProblem> generate(final int count, final int workersCount, final int jobsCount) {
+        return new Iterator<GapProblem>() {
+
+            private int generated = 0;
+
+            public boolean hasNext() {
+                return generated < count;
+            }
+
+            public GapProblem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                generated++;
+                return generate(workersCount, jobsCount);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
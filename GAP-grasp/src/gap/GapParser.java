@@ -1,93 +1,389 @@
 package gap;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Class used for reading the input from a file and initializing the values in
- * data structures.
+ * data structures. The file format is described in data/format-gap.txt. Rows of
+ * values may be wrapped over several lines, but each row has to end with a line,
+ * so that damaged rows are detected. Skipped problems are only counted by lines,
+ * a damaged problem is skipped up to the next empty line.
+ *
+ * In memory mapped mode the file is mapped once and the values are parsed
+ * directly from the mapping. Positions of all problems are indexed on the first
+ * access, so that any problem can be then read without parsing the preceding ones.
+ *
+ * Files in the binary format (see GapBinary) are recognized and loaded without
+ * parsing.
  */
 public class GapParser {
 
     File file;
+    /** Read the file through a memory mapping. */
+    private boolean mapped;
+    /** The mapped file, created on the first access. */
+    private ByteBuffer mappedFile;
+    /** Offsets of the problems in the file, created on the first access. */
+    private long[] problemOffsets;
+    /** The binary file, null if the file is a text file. */
+    private GapBinary binary;
+    private boolean formatDetected = false;
     
     public GapParser(File _file){
+        this(_file, false);
+    }
+
+    /**
+     * @param _file Input file.
+     * @param _mapped True if the file should be memory mapped, false if it
+     *  should be read as a stream.
+     */
+    public GapParser(File _file, boolean _mapped){
         file = _file;
+        mapped = _mapped;
+    }
+
+    /**
+     * Open the file in the binary format.
+     * @return The binary file or null if the file is a text file.
+     */
+    private GapBinary binary() throws FileNotFoundException, IOException {
+        if (!formatDetected) {
+            if (GapBinary.isBinary(file)) {
+                binary = new GapBinary(file, true);
+            }
+            formatDetected = true;
+        }
+        return binary;
+    }
+
+    private IntReader open() throws FileNotFoundException, IOException {
+        if (mapped) {
+            return new IntReader(map().duplicate());
+        }
+        return new IntReader(new FileInputStream(file).getChannel());
+    }
+
+    /**
+     * Map the file to memory. The mapping stays valid after the channel is closed.
+     */
+    private ByteBuffer map() throws FileNotFoundException, IOException {
+        if (mappedFile == null) {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Parser: File " + file + " is too large to be mapped, use streaming mode");
+                }
+                mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                channel.close();
+            }
+        }
+        return mappedFile;
+    }
+
+    /**
+     * Index positions of all problems in the mapped file.
+     * @return Offsets of the problems in the file, in order of the problems.
+     */
+    public long[] getProblemOffsets() throws FileNotFoundException, IOException {
+        if (!mapped) {
+            throw new IOException("Parser: Problem offsets are only available in memory mapped mode");
+        }
+        if (problemOffsets == null) {
+            IntReader in = open();
+            int count = in.nextInt();
+            long[] offsets = new long[Math.max(count, 0)];
+            for (int i = 0; i < offsets.length; i++) {
+                in.hasNext(); // move to the beginning of the problem
+                offsets[i] = in.position();
+                skipProblem(in);
+            }
+            problemOffsets = offsets;
+        }
+        return problemOffsets;
     }
     
+    /**
+     * Read a single problem from the file.
+     * @param pos Position of the problem in the file, starting from 1.
+     * @return The problem or null if there is no such problem in the file.
+     */
     public GapProblem parseProblem(int pos) throws FileNotFoundException, IOException{
-        BufferedReader in = new BufferedReader(new FileReader(file));
-        
-        String line; 
-        line = in.readLine();
-        
-        if (pos > Integer.parseInt(line))
-            return null; // we want something that is not there
-        in.readLine(); // first is always empty 
-        while (pos > 1){            
-            if (in.readLine().isEmpty()) {
-                pos--;
-                if (pos == 1) // time to read problem
-                    break;
-                while(in.readLine().isEmpty()) { // skip empty lines                    
-                }                
-            }    
-        }        
-        while((line = in.readLine()).isEmpty()){ // skip empty lines    
-        }            
-        // our problem is here
-        String tmp[] = line.split(" ");
-        int workersCount = Integer.valueOf(tmp[0]);
-        int jobCount = Integer.valueOf(tmp[1]);
-        
+        if (binary() != null) {
+            return binary.parseProblem(pos);
+        }
+        if (mapped) {
+            long[] offsets = getProblemOffsets();
+            if (pos < 1 || pos > offsets.length) {
+                return null;
+            }
+            IntReader in = open();
+            in.seek(offsets[pos - 1]);
+            return readProblem(in);
+        }
+        IntReader in = open();
+        try {
+            int count = in.nextInt();
+            if (pos < 1 || pos > count) {
+                return null; // we want something that is not there
+            }
+            for (int i = 1; i < pos; i++) {
+                skipProblem(in);
+            }
+            return readProblem(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Iterator reading the problems of the file in one pass. A damaged problem
+     * is reported by UncheckedIOException from next(), the following problems
+     * can still be read.
+     */
+    public class ProblemIterator implements Iterator<GapProblem>, Closeable {
+
+        private IntReader in;
+        /** Number of problems in the file */
+        private int count;
+        private int read;
+
+        private ProblemIterator() throws FileNotFoundException, IOException {
+            read = 0;
+            if (binary() != null) {
+                count = binary.getCount();
+                return;
+            }
+            in = open();
+            try {
+                count = in.nextInt();
+            } catch (IOException ex) {
+                in.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Number of problems in the file.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public boolean hasNext() {
+            return read < count;
+        }
+
+        /**
+         * Read the next problem. If the problem is damaged, the reader moves
+         * to the next problem before the exception is thrown.
+         */
+        public GapProblem next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            read++;
+            try {
+                if (in == null) {
+                    return binary.parseProblem(read);
+                }
+                try {
+                    return readProblem(in);
+                } catch (IOException ex) {
+                    skipToEmptyLine(in);
+                    throw ex;
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Read all problems from the file in one pass. The problems are parsed
+     * lazily, the iterator should be closed to release the file.
+     */
+    public ProblemIterator iterator() throws FileNotFoundException, IOException {
+        return new ProblemIterator();
+    }
+
+    /**
+     * Read all problems from the file in one pass. The problems are parsed
+     * lazily as the stream is consumed, the stream should be closed to release
+     * the file. I/O and format errors are reported as UncheckedIOException and
+     * end the stream, use iterator() to continue after a damaged problem.
+     */
+    public Stream<GapProblem> problems() throws FileNotFoundException, IOException {
+        final ProblemIterator iterator = new ProblemIterator();
+        Spliterator<GapProblem> spliterator = Spliterators.spliterator(iterator, iterator.getCount(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+
+            public void run() {
+                try {
+                    iterator.close();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Skip a problem by counting the values on its lines. If the problem has less
+     * values than expected, it ends with the first empty line after its values.
+     */
+    private void skipProblem(IntReader in) throws IOException {
+        int workersCount = in.nextInt();
+        int jobCount = in.nextInt();
+        long remaining = 2L * workersCount * jobCount + workersCount;
+        remaining -= in.skipLine();
+        boolean started = false;
+        while (remaining > 0) {
+            int tokens = in.skipLine();
+            if (tokens < 0) {
+                throw new EOFException("Parser: Unexpected end of file");
+            }
+            if (tokens == 0) {
+                if (started) {
+                    return; // damaged problem
+                }
+                continue;
+            }
+            started = true;
+            remaining -= tokens;
+        }
+    }
+
+    /**
+     * Write the problems to a text file in the format read by the parser.
+     * @param out Output file, it is overwritten.
+     * @param count Number of the problems, it is written first.
+     * @param problems Problems to write, they are written one by one as they
+     *  are taken from the iterator.
+     * @return Number of problems written.
+     */
+    public static int write(File out, int count, Iterator<GapProblem> problems) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.US_ASCII), 1 << 16);
+        try {
+            writer.write(count + "\n\n");
+            int written = 0;
+            while (problems.hasNext()) {
+                if (written == count) {
+                    throw new IOException("Parser: More than " + count + " problems to write");
+                }
+                write(writer, problems.next().getSolution().getSettings());
+                written++;
+            }
+            if (written != count) {
+                throw new IOException("Parser: Only " + written + " of " + count + " problems written");
+            }
+            return written;
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void write(Writer writer, GapSettings settings) throws IOException {
+        int workersCount = settings.getWorkersCount();
+        int jobCount = settings.getJobsCount();
+        writer.write(workersCount + " " + jobCount + "\n");
+        for (int i = 0; i < workersCount; i++) {
+            for (int j = 0; j < jobCount; j++) {
+                if (j > 0) {
+                    writer.write(' ');
+                }
+                writer.write(Integer.toString(settings.getCost(i, j)));
+            }
+            writer.write("\n");
+        }
+        for (int i = 0; i < workersCount; i++) {
+            for (int j = 0; j < jobCount; j++) {
+                if (j > 0) {
+                    writer.write(' ');
+                }
+                writer.write(Integer.toString(settings.getTime(i, j)));
+            }
+            writer.write("\n");
+        }
+        for (int i = 0; i < workersCount; i++) {
+            if (i > 0) {
+                writer.write(' ');
+            }
+            writer.write(Integer.toString(settings.getLimitTime(i)));
+        }
+        writer.write("\n\n");
+    }
+
+    /**
+     * Skip lines until an empty line or end of file.
+     */
+    private void skipToEmptyLine(IntReader in) throws IOException {
+        int tokens;
+        do {
+            tokens = in.skipLine();
+        } while (tokens > 0);
+    }
+
+    private GapProblem readProblem(IntReader in) throws IOException {
+        int workersCount = in.nextInt();
+        int jobCount = in.nextInt();
+        if (workersCount < 0 || jobCount < 0) {
+            throw new IOException("Parser: Wrong problem size " + workersCount + "x" + jobCount);
+        }
+        in.expectLineEnd("Problem size");
+
         int[][] workerJobCost = new int[workersCount][jobCount];
         int [][] workerJobTime = new int[workersCount][jobCount];
         int [] workerLimitTime = new int[workersCount];
-        
+
         for (int i = 0; i < workersCount; i++) { // reading costs
-            line = in.readLine();
-            tmp = line.split(" ");
-            if (tmp.length != jobCount) {
-                System.out.println("Parser: File format is wrong");
-                System.out.println("Parser: Count of workerJobCost elements is " + tmp.length + "(should be "+ jobCount + ")");
-                return null;
-            }
-            
-            for (int j=0; j < tmp.length; j++){
-                workerJobCost[i][j] = Integer.parseInt(tmp[j]);
+            for (int j = 0; j < jobCount; j++) {
+                workerJobCost[i][j] = in.nextInt();
             }
+            in.expectLineEnd("workerJobCost", i + 1, jobCount);
         }
-        
         for (int i = 0; i < workersCount; i++) { // reading time
-            line = in.readLine();
-            tmp = line.split(" ");
-            if (tmp.length != jobCount) {
-                System.out.println("Parser: Format of file is wrong");
-                System.out.println("Parser: Count of workerJobTime elements is " + tmp.length + "(should be "+ jobCount + ")");
-                return null;
-            }
-            for (int j=0; j < tmp.length; j++){
-                workerJobTime[i][j] = Integer.parseInt(tmp[j]);
+            for (int j = 0; j < jobCount; j++) {
+                workerJobTime[i][j] = in.nextInt();
             }
+            in.expectLineEnd("workerJobTime", i + 1, jobCount);
         }
-        
-        line = in.readLine();
-        tmp = line.split(" ");    
-        if (tmp.length != workersCount) {
-                System.out.println("Parser: Format of file is wrong");
-                System.out.println("Parser: Count of workerLimitTime elements is " + tmp.length + "(should be "+ workersCount + ")");
-                return null;
-        }
-        
-        for (int i=0; i < tmp.length; i++){
-            workerLimitTime[i] =Integer.parseInt(tmp[i]);
+        for (int i = 0; i < workersCount; i++) {
+            workerLimitTime[i] = in.nextInt();
         }
+        in.expectLineEnd("workerLimitTime", 0, workersCount);
         GapSettings settings = new GapSettings(workerJobCost, workerJobTime, workerLimitTime);
-        GapProblem myProblem = new GapProblem(workersCount, jobCount, settings);
-        
-        return myProblem;
+        return new GapProblem(workersCount, jobCount, settings);
     }
-}
\ No newline at end of file
+}
@@ -1,73 +1,59 @@
 package gap;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.Random;
-import java.util.Vector;
-import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class GapProblem {
 
+    private static final Logger logger = Logger.getLogger(GapProblem.class.getName());
+
     /** Number of workers in the problem */
     private int workersCount;
     /** Number of jobs in the problem */
     private int jobsCount;
     /** Solution of the problem, used by Main class */
     private GapSolution solution;
-    /** Domains of feasible assignments of workers to jobs.*/
-    private ArrayList<LinkedList<Integer>> jobDomains = new ArrayList<LinkedList<Integer>>();
+    /** Domains of feasible assignments of workers to jobs, scratch buffers and
+     * solutions of the generators and the local search. Each solver thread works
+     * on its own copy of the problem, so the workspace is reused by all its
+     * generations and local searches. */
+    private final SolverWorkspace workspace;
     /** Statistic of backtrack steps needed to solve the problem */
     int backtracksCount;
+    /** Evaluate neighbourhoods of the local search in parallel */
+    private boolean parallelNeighbourhood = false;
+    /** Trace of the improvements of GRASP runs, null if not traced. */
+    private ConvergenceTrace trace;
+    /** Counters and timers of the last GRASP run, each run replaces them. */
+    private SolverMetrics metrics = new SolverMetrics();
+    /** Random generator of the generators and the local search, GRASP iterations
+     * use generators split from it. */
+    private SplittableRandom random;
 
     public GapProblem(int _workersCount, int _jobsCount, GapSettings _settings) {
         workersCount = _workersCount;
         jobsCount = _jobsCount;
         solution = new GapSolution(jobsCount, workersCount, _settings);
+        workspace = new SolverWorkspace(jobsCount, workersCount, _settings);
+        random = new SplittableRandom();
         fillJobDomains();
         backtracksCount = 0;
     }
-    // Comparator for Job class, compares by minTime in descending order
-    public static Comparator<Job> JOB_MINTIME_ORDER_DESC = new Comparator<Job>() {
-
-        public int compare(Job j1, Job j2) {
-            int minTime1 = j1.getMinTime();
-            int minTime2 = j2.getMinTime();
-            if (minTime1 < minTime2) {
-                return 1;
-            } else if (minTime2 < minTime1) {
-                return -1;
-            } else {
-                int maxTime1 = j1.getMaxTime();
-                int maxTime2 = j2.getMaxTime();
-                if (maxTime1 < maxTime2) {
-                    return 1;
-                } else if (maxTime2 < maxTime1) {
-                    return -1;
-                } else {
-                    return 0;
-                }
-            }
-        }
-    };
 
-    private GapProblem(GapProblem problem) {
+    GapProblem(GapProblem problem) {
         this(problem.workersCount, problem.jobsCount, problem.getSolution().getSettings());
+        parallelNeighbourhood = problem.parallelNeighbourhood;
+        /** The generator is not thread-safe, copies must be created by a single thread. */
+        random = problem.random.split();
     }
 
     /**
      * Reset the jom domains structure to contain all workers for all jobs.
      */
     private void fillJobDomains() {
-        jobDomains.clear();
-        for (int i = 0; i < jobsCount; i++) {
-            jobDomains.add(new LinkedList<Integer>());
-            for (int j = 0; j < workersCount; j++) {
-                jobDomains.get(i).add(new Integer(j));
-            }
-        }
+        workspace.jobDomains.fill();
     }
 
     @Override
@@ -85,29 +71,27 @@ public class GapProblem {
     public boolean generateRandomSolution() {
         /** Update job domains (i.e., fill them completely in the beginning). */
         updateJobDomains(-1);
-        Random generator = new Random();
+        SplittableRandom generator = random;
         for (int i = 0; i < jobsCount; i++) {
-            if (!jobDomains.get(i).isEmpty()) { // There is something in the job domain
+            if (!workspace.jobDomains.isEmpty(i)) { // There is something in the job domain
                 /** Select value form the job domain */
-                int pos = generator.nextInt(jobDomains.get(i).size());
+                int pos = generator.nextInt(workspace.jobDomains.size(i));
                 /** Determine id of the worker from the domain */
-                int worker = jobDomains.get(i).get(pos).intValue();
+                int worker = workspace.jobDomains.get(i, pos);
                 solution.assign(i, worker, true);
                 /** Remove the worker from the domain. In this subtree, this worker
                  * will not be assigned to the job again. */
-                jobDomains.get(i).remove(pos);
-                updateJobDomains(-1); // arc consistency on all not assigned variables                
+                workspace.marks[i] = propagateAssignment(solution, i, worker); // arc consistency on all not assigned variables
             } else { // No workers found in the job domain
                 i = i - 1; // Unassign the previously assigned job.
                 if (i < 0) { // We are on the top of the tree - no solution found, return failure.
                     return false;
                 }
                 backtracksCount++;
-                /** Unassigne the previously assigned job and update the domains. The
-                 * previously assigned job is omitted from the update, as the domain would
-                 * otherwise get filled with previously eliminated values.*/
+                /** Unassigne the previously assigned job and restore the domains. The
+                 * previously assigned job keeps its domain without the eliminated values.*/
                 solution.unassign(i);
-                updateJobDomains(i);
+                workspace.jobDomains.undo(workspace.marks[i]);
                 i = i - 1; // Step back in the cycle
             }
         }
@@ -123,29 +107,102 @@ public class GapProblem {
     }
 
     private void updateJobDomains(GapSolution gs, int ommit) {
-        GapSettings set = gs.getSettings();
+        workspace.jobDomains.clearTrail();
         for (int i = 0; i < jobsCount; i++) {
             /** We do not want to mangle with assigned variables, as it would break
              * the backtracking. */
             if (gs.isAssigned(i) || i == ommit) {
                 continue;
             }
-            /** Clear the domain from all values. */
-            jobDomains.get(i).clear();
-            for (int j = 0; j < workersCount; j++) {
-                /** Add only the feasible values */
-                if (gs.canFeasiblyAssign(i, j)) {
-                    jobDomains.get(i).add(new Integer(j));  // this value can be used!         
-
-                }
-            }
+            /** Keep only the feasible values in the domain. */
+            workspace.jobDomains.restrict(i, gs);
         }
     }
 
+    /**
+     * Update the domains after the job was assigned to the worker. The worker is
+     * removed from the job domain, so that it is not tried again in this subtree,
+     * and the worker is removed from domains of the unassigned jobs which can not
+     * be feasibly assigned to him anymore. Only the worker's domain column is
+     * checked, as the other workers' times have not changed.
+     * @return Trail mark, workspace.jobDomains.undo(mark) restores the domains of the unassigned
+     *  jobs when the assignment is taken back.
+     */
+    private int propagateAssignment(GapSolution gs, int job, int worker) {
+        workspace.jobDomains.remove(job, worker, true);
+        int mark = workspace.jobDomains.mark();
+        workspace.jobDomains.propagate(gs, worker);
+        return mark;
+    }
+
+    public int getJobsCount() {
+        return jobsCount;
+    }
+
+    public int getWorkersCount() {
+        return workersCount;
+    }
+
+    /**
+     * Seed the random generator of the problem. All random decisions of the
+     * generators, the local search and GRASP on this problem are then reproducible,
+     * parallel GRASP for a given seed and number of threads as well, up to the
+     * adaptive backtrack limits of the threads and the stop at the lower bound.
+     * @param seed Seed of the generator.
+     */
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Random generator of the problem, it must be used only by the thread
+     * solving the problem.
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    public boolean isParallelNeighbourhood() {
+        return parallelNeighbourhood;
+    }
+
+    /**
+     * Set whether the local search should evaluate the neighbourhoods in parallel.
+     * Useful for large problems solved by a single thread.
+     */
+    public void setParallelNeighbourhood(boolean parallel) {
+        parallelNeighbourhood = parallel;
+    }
+
     public int getBacktracksCount() {
         return backtracksCount;
     }
 
+    /**
+     * Record the improvements of the best solution of the following GRASP runs,
+     * sequential and parallel, to the trace.
+     * @param _trace The trace, null to stop tracing.
+     */
+    public void setTrace(ConvergenceTrace _trace) {
+        trace = _trace;
+    }
+
+    public ConvergenceTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Metrics of the last GRASP run on this problem. After a parallel run they
+     * contain the metrics of all threads.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    void setMetrics(SolverMetrics _metrics) {
+        metrics = _metrics;
+    }
+
     /**
      * Generate solution greedy for time - for each job, select the worker, which
      * can complete the job in the shortest time. This method is capable of finding
@@ -153,63 +210,49 @@ public class GapProblem {
      * @return True if a feasible solution was found, false otherwise.
      */
     public boolean generateTimeGreedySolution() {
-        GapSettings set = solution.getSettings();
-        Vector<Job> sortedJobs = new Vector<Job>(jobsCount);
-        int minTime, maxTime, bestWorker, time;
-        /** Find minimum and maximum times needed for completion of each job.*/
-        for (int job = 0; job < jobsCount; job++) {
-            minTime = -1;
-            maxTime = -1;
-            bestWorker = -1;
-
-            for (int worker = 0; worker < workersCount; worker++) {
-                time = set.getTime(worker, job);
-                if (maxTime < time) {
-                    maxTime = time;
-                }
-                if (time < minTime || minTime == -1) {
-                    minTime = time;
-                    bestWorker = worker;
-                }
-            }
-            sortedJobs.add(job, new Job(job, maxTime - minTime, bestWorker));
-        }
-        /** Sort the jobs by the difference between minimum and maximum time in
-         * descending order.*/
-        Collections.sort(sortedJobs);
+        return generateTimeGreedySolution(0);
+    }
+
+    /**
+     * Generate solution greedy for time with a time limit, see
+     * generateTimeGreedySolution(). The limit is checked when backtracking.
+     * @param timeLimit Time limit in milliseconds, no limit if not positive.
+     * @return True if a feasible solution was found, false if there is none
+     *  or the time limit passed.
+     */
+    public boolean generateTimeGreedySolution(long timeLimit) {
+        long deadline = System.nanoTime() + timeLimit * 1000000L;
+        JobIndex index = solution.getSettings().getJobIndex();
+        /** Jobs sorted by the difference between minimum and maximum time in
+         * ascending order.*/
+        int[] sortedJobs = index.getJobsByTimeDelta();
+        int[] sortedWorkers = index.getWorkersByTime();
         /** Reset the job domains.*/
         fillJobDomains();
         updateJobDomains(-1);
         for (int i = 0; i < jobsCount; i++) {
-            Job job = sortedJobs.get(i);
-            if (!jobDomains.get(job.getId()).isEmpty()) {
+            int jobId = sortedJobs[i];
+            if (!workspace.jobDomains.isEmpty(jobId)) {
                 // There is pretty good chance to get a deterministic asignment; try
-                // to get the best worker available.
-                if (jobDomains.get(job.getId()).contains(job.getBestWorkerId())) {
-                    solution.assign(job.getId(), job.getBestWorkerId());
-                    int pos = jobDomains.get(job.getId()).indexOf(job.getBestWorkerId());
-                    jobDomains.get(job.getId()).remove(pos);
-                } else {
-                    int min = Integer.MAX_VALUE;
-                    int position = -1;
-                    for (int j = 0; j < jobDomains.get(job.getId()).size(); j++) {
-                        if (min > set.getTime(jobDomains.get(job.getId()).get(j), job.getId())) {
-                            min = set.getTime(jobDomains.get(job.getId()).get(j), job.getId());
-                            position = j;
-                        }
-                    }
-                    solution.assign(job.getId(), jobDomains.get(job.getId()).get(position));
-                    jobDomains.get(job.getId()).remove(position);
+                // to get the best worker available, i.e., the first one in the
+                // ordering by time which is still in the domain.
+                int workerId = -1;
+                for (int pos = jobId * workersCount; workerId == -1 || !workspace.jobDomains.contains(jobId, workerId); pos++) {
+                    workerId = sortedWorkers[pos];
                 }
-                updateJobDomains(-1);
+                solution.assign(jobId, workerId);
+                workspace.marks[i] = propagateAssignment(solution, jobId, workerId);
             } else { //Something went wrong, we have to backtrack.
                 i--;
                 if (i < 0) {
                     return false;
                 }
-                int jobId = sortedJobs.get(i).getId();
+                if (timeLimit > 0 && System.nanoTime() - deadline > 0) {
+                    return false;
+                }
+                jobId = sortedJobs[i];
                 solution.unassign(jobId);
-                updateJobDomains(jobId);
+                workspace.jobDomains.undo(workspace.marks[i]);
                 backtracksCount++;
                 i--;
             }
@@ -223,8 +266,14 @@ public class GapProblem {
      * @return True if there was feasible solution found, false otherwise.
      */
     public boolean generateGRASPSolution() {
-        int numIterations = Math.max(jobsCount, 50);
-        return generateGRASPSolution(numIterations, .5);
+        return generateGRASPSolution(getDefaultGRASPIterations(), .5);
+    }
+
+    /**
+     * Default number of GRASP iterations for the problem.
+     */
+    public int getDefaultGRASPIterations() {
+        return Math.max(jobsCount, 50);
     }
 
     /**
@@ -237,9 +286,49 @@ public class GapProblem {
      * @return True if there was feasible solution found, false otherwise.
      */
     public boolean generateGRASPSolution(int iterations, double rclRatio) {
-        Vector<Vector<Worker>> sortedWorkers = sortWorkers();
-        GapSolution bestSolution = new GapSolution(jobsCount, workersCount, solution.getSettings());
-        int bestCost = Integer.MAX_VALUE;
+        return generateGRASPSolution(iterations, rclRatio, 0);
+    }
+
+    /**
+     * GRASP metaheuristics method with a time limit. The search ends after the
+     * given number of iterations or when the time limit passes, whichever comes
+     * first. The best solution found so far is kept in any case. The time limit
+     * includes the setup of the search, e.g. building the JobIndex.
+     * @param iterations Maximum number of iterations.
+     * @param rclRatio Size of RCL compared to number of the available values.
+     * @param timeLimit Time limit in milliseconds, no limit if not positive.
+     * @return True if there was feasible solution found, false otherwise.
+     */
+    public boolean generateGRASPSolution(int iterations, double rclRatio, long timeLimit) {
+        long start = System.nanoTime();
+        /** Only this run is added to the totals. */
+        metrics = new SolverMetrics();
+        int startBacktracks = backtracksCount;
+        GraspContext context = new GraspContext(iterations, getCostLowerBound(), random.split());
+        context.setTrace(trace);
+        if (timeLimit > 0) {
+            /** Only the remaining part of the budget is left to the iterations. */
+            context.setTimeLimit(Math.max(timeLimit - (System.nanoTime() - start) / 1000000L, 0));
+        }
+        boolean feasible = generateGRASPSolution(context, rclRatio);
+        metrics.setBacktracks(backtracksCount - startBacktracks);
+        SolverMetrics.finishRun(metrics);
+        if (!feasible || context.getIncumbent() == null) {
+            return false;
+        }
+        solution = new GapSolution(context.getIncumbent(), solution.getSettings());
+        return true;
+    }
+
+    /**
+     * GRASP iterations of one thread. Iterations are taken from the context
+     * shared by all threads solving the problem until the budget is exhausted
+     * or the search is stopped, solutions found are offered to the shared incumbent.
+     * @param context Shared state of the search.
+     * @param rclRatio Size of RCL compared to number of the available values.
+     * @return False if the problem was found infeasible, true otherwise.
+     */
+    public boolean generateGRASPSolution(GraspContext context, double rclRatio) {
         /** If there are too many failed solution generations, we force the backtrack to search
          * whole tree. This ensures that infeasible assignments are detected correctly. The
          * variable is set to false in the beginning and optionally switched to true later.*/
@@ -249,99 +338,91 @@ public class GapProblem {
         /** How many runs of solution generator are allowed to fail before we force
          * the backtracking to finish.*/
         double maxFailedIterRatio = 0.8;
-        int failedIterations = 0;
 
-        for (int i = 0; i < iterations; i++) {
+        SplittableRandom iterationRandom;
+        while ((iterationRandom = context.nextIterationRandom()) != null) {
             /** Generate the initial solution. */
-            GapSolution gs = generateInitialSolutionForGrasp(sortedWorkers, rclRatio, forceBacktrack, maxBacktracks);
+            long start = System.nanoTime();
+            GapSolution gs = generateInitialSolutionForGrasp(rclRatio, forceBacktrack, maxBacktracks, context, iterationRandom);
+            metrics.recordConstruction(System.nanoTime() - start, !gs.allAssigned());
             if (!gs.allAssigned()) { // Solution generator failed to find a feasible solution.
+                if (context.isFinished()) { // Interrupted by the time limit, not a failure.
+                    break;
+                }
                 if (forceBacktrack) {
+                    context.stop();
                     return false;
                 }
-                failedIterations++;
                 maxBacktracks *= 2;
-                if (failedIterations > maxFailedIterRatio * iterations) { //Too many iterations have failed
+                if (context.addFailedIteration() > maxFailedIterRatio * context.getIterations()) { //Too many iterations have failed
                     forceBacktrack = true;
-                    System.out.println("GRASP: Too many failed iterations, forcing full backtracking.");
+                    metrics.recordForcedBacktrack();
+                    logger.info("GRASP: Too many failed iterations, forcing full backtracking.");
                 }
                 continue; // Do not perform local search
             } else {
                 maxBacktracks *= 0.8;
             }
-            /** Perform the local search on the generated solution */
-            gs = new GapSolution(localSearch(gs), gs.getSettings());
-            if (gs.getGlobalCost() < bestCost) { // We found the best solution so far
-                bestSolution = new GapSolution(gs, gs.getSettings());
-                bestCost = gs.getGlobalCost();
+            /** Perform the local search on the generated solution, the result
+             * is copied by the context if it becomes the incumbent. */
+            if (context.offer(localSearch(gs, context, iterationRandom))) {
+                metrics.recordBest(context.getElapsedNanos());
             }
         }
-        solution = new GapSolution(bestSolution, bestSolution.getSettings());
         return true;
     }
 
-    /**
-     * For each job, sort the workers by time needed for them to complete the job.
-     * @return Two dimensional array, indexed by job id first and worker id second.
-     */
-    private Vector<Vector<Worker>> sortWorkers() {
-        GapSettings set = solution.getSettings();
-        Vector<Vector<Worker>> w = new Vector<Vector<Worker>>(jobsCount);
-        for (int i = 0; i < jobsCount; i++) {
-            Vector<Worker> tempWorkers = new Vector<Worker>(workersCount);
-            for (int j = 0; j < workersCount; j++) {
-                tempWorkers.add(new Worker(j, set.getTime(j, i)));
-            }
-            if (!tempWorkers.isEmpty()) {
-                Collections.sort(tempWorkers);
-            }
-            w.add(tempWorkers);
-        }
-        return w;
-    }
-
     /**
      * Generate initial solution for each GRASP iteration. Local search is then performed
      * on the generated solution. The method iterates over jobs, which are sorted by their
      * delta (difference between minimum and maximum time over all workers). For each job,
      * workers are sorted in ascending order by their time needed to complete the job. RCLs
-     * are generated with respect to this sorting.
-     * @param sortedWorkers
+     * are generated with respect to this sorting. Both orderings are taken from
+     * the JobIndex of the problem.
      * @param rclRatio
      * @param forceBacktrack
      * @param maxBacktracks
-     * @return Generated solution.
+     * @return Generated solution. The solution is owned by the problem and it is
+     *  overwritten by the next generation, copy it to keep it.
      */
-    public GapSolution generateInitialSolutionForGrasp(Vector<Vector<Worker>> sortedWorkers, double rclRatio, boolean forceBacktrack, int maxBacktracks) {
-        GapSolution gs = new GapSolution(jobsCount, workersCount, solution.getSettings());
-        Vector<Job> jobsOrder = new Vector<Job>(jobsCount);
-        for (int job = 0; job < jobsCount; job++) {
-            int minTime = Integer.MAX_VALUE;
-            int maxTime = Integer.MIN_VALUE;
-            int time;
-            int bestWorker = -1;
-            for (int worker = 0; worker < workersCount; worker++) {
-                time = gs.getSettings().getTime(worker, job);
-                if (time < minTime || minTime == -1) {
-                    minTime = time;
-                    bestWorker = worker;
-                }
-                if (time > maxTime) {
-                    maxTime = time;
-                }
-            }
-            jobsOrder.add(job, new Job(job, maxTime - minTime, bestWorker));
-        }
-        // Sort jobs by the delta.
-        Collections.sort(jobsOrder);
-        Random generator = new Random();
+    public GapSolution generateInitialSolutionForGrasp(double rclRatio, boolean forceBacktrack, int maxBacktracks) {
+        return generateInitialSolutionForGrasp(rclRatio, forceBacktrack, maxBacktracks, null);
+    }
+
+    /**
+     * Generate initial solution for GRASP iteration, the generation is interrupted
+     * when the search is stopped or its time limit passes.
+     * @param context Shared state of the search, may be null.
+     * @return Generated solution, not all jobs are assigned if the generation failed
+     *  or was interrupted.
+     */
+    public GapSolution generateInitialSolutionForGrasp(double rclRatio, boolean forceBacktrack, int maxBacktracks, GraspContext context) {
+        return generateInitialSolutionForGrasp(rclRatio, forceBacktrack, maxBacktracks, context, random);
+    }
+
+    /**
+     * Generate initial solution for GRASP iteration using the given random generator.
+     * @param context Shared state of the search, may be null.
+     * @param generator Random generator of the iteration.
+     * @return Generated solution, see generateInitialSolutionForGrasp(double, boolean, int, GraspContext).
+     */
+    public GapSolution generateInitialSolutionForGrasp(double rclRatio, boolean forceBacktrack, int maxBacktracks,
+            GraspContext context, SplittableRandom generator) {
+        GapSolution gs = workspace.start;
+        gs.clear();
+        JobIndex index = gs.getSettings().getJobIndex();
+        int[] sortedWorkers = index.getWorkersByTime();
+        // Jobs sorted by the delta.
+        int[] jobsOrder = workspace.jobsOrder;
+        System.arraycopy(index.getJobsByTimeDelta(), 0, jobsOrder, 0, jobsCount);
 
         /** Mangle the job list slightly - randomly move the jobs a little.
          * This might help variability a little.*/
         for (int i = 0; i < jobsCount; i++) {
             int pos = generator.nextInt(Math.min(jobsCount - i, 2)) + i;
-            Job tmp = jobsOrder.get(pos);
-            jobsOrder.set(pos, jobsOrder.get(i));
-            jobsOrder.set(i, tmp);
+            int tmp = jobsOrder[pos];
+            jobsOrder[pos] = jobsOrder[i];
+            jobsOrder[i] = tmp;
         }
 
         /** Traditional search wich backtracking similar to other solution generators.*/
@@ -349,14 +430,15 @@ public class GapProblem {
         updateJobDomains(gs, -1);
         int backtracks = 0;
         for (int i = 0; i < jobsCount; i++) {
-            int jobId = jobsOrder.get(i).getId();
-            Vector<Integer> rcl = makeRcl(gs, jobId, sortedWorkers.get(jobId), rclRatio);
-            if (rcl.size() != 0) {
-                int pos = generator.nextInt(rcl.size());
-                gs.assign(jobId, rcl.get(pos).intValue());
-                int index = jobDomains.get(jobId).indexOf(rcl.get(pos));
-                jobDomains.get(jobId).remove(index);
-                updateJobDomains(gs, -1);
+            if (context != null && context.isFinished()) {
+                break;
+            }
+            int jobId = jobsOrder[i];
+            IntArrayList rcl = makeRcl(gs, jobId, sortedWorkers, rclRatio);
+            if (!rcl.isEmpty()) {
+                int worker = rcl.get(generator.nextInt(rcl.size()));
+                gs.assign(jobId, worker);
+                workspace.marks[i] = propagateAssignment(gs, jobId, worker);
             } else {
                 if (!forceBacktrack && backtracks > maxBacktracks) {
                     return gs;
@@ -365,9 +447,9 @@ public class GapProblem {
                 if (i < 0) {
                     return gs;
                 }
-                jobId = jobsOrder.get(i).getId();
+                jobId = jobsOrder[i];
                 gs.unassign(jobId);
-                updateJobDomains(gs, jobId);
+                workspace.jobDomains.undo(workspace.marks[i]);
                 backtracks++;
                 i--;
             }
@@ -381,23 +463,21 @@ public class GapProblem {
      * of workers available for the job, where the workers with shortest time needed
      * are placed first. Only feasible values are added to the RCL.
      * @param jobId Id of the job
-     * @param workers Sorted list of the workers
-     * @param ratio Ratio between size of the RCL and size of workers vector
-     * @return Generated RCL.
+     * @param workers Sorted workers of all jobs, job-major
+     * @param ratio Ratio between size of the RCL and number of workers
+     * @return Generated RCL, the scratch buffer of the workspace is reused.
      */
-    private Vector<Integer> makeRcl(GapSolution gs, int jobId, Vector<Worker> workers, double ratio) {
-        int tmpRclCard = 0;
-        int rclCard = (int) (workers.size() * ratio);
+    private IntArrayList makeRcl(GapSolution gs, int jobId, int[] workers, double ratio) {
+        int rclCard = (int) (workersCount * ratio);
         if (rclCard == 0) {
             rclCard = 1;
         }
-        int rclSize = 0;
-        Vector<Integer> rcl = new Vector<Integer>();
-        for (int i = 0; i < workers.size() && rclSize < rclCard; i++) {
-            if (gs.canFeasiblyAssign(jobId, workers.get(i).getWorkerId())
-                    && jobDomains.get(jobId).contains(workers.get(i).getWorkerId())) {
-                rcl.add(workers.get(i).getWorkerId());
-                rclSize++;
+        IntArrayList rcl = workspace.candidates;
+        rcl.clear();
+        for (int i = jobId * workersCount; i < (jobId + 1) * workersCount && rcl.size() < rclCard; i++) {
+            if (gs.canFeasiblyAssign(jobId, workers[i])
+                    && workspace.jobDomains.contains(jobId, workers[i])) {
+                rcl.add(workers[i]);
             }
         }
         return rcl;
@@ -427,52 +507,30 @@ public class GapProblem {
         greedyJobs = Math.min(greedyJobs, jobsCount);
         // Selected ratio too low, fall back to random
         if (greedyJobs <= 0) {
-            System.out.println("Peckish generator: ratio too low, fallback to radnom generation.");
+            logger.info("Peckish generator: ratio too low, fallback to random generation.");
             return generateRandomSolution();
         }
 
-        Vector<Job> sortedJobs = new Vector<Job>(jobsCount);
-        int minTime, bestWorker, time;
-        minTime = bestWorker = -1;
-        int maxTime;
-
-        // Determine the shortest time needed for completion of each job.
-        for (int job = 0; job < jobsCount; job++) {
-            minTime = Integer.MAX_VALUE;
-            maxTime = Integer.MIN_VALUE;
-            for (int worker = 0; worker < workersCount; worker++) {
-                time = set.getTime(worker, job);
-                if (time < minTime || minTime == -1) {
-                    minTime = time;
-                    bestWorker = worker;
-                }
-                if (time > maxTime) {
-                    maxTime = time;
-                }
-            }
-            sortedJobs.add(job, new Job(job, bestWorker));
-            sortedJobs.get(job).setMinTime(minTime);
-            sortedJobs.get(job).setMaxTime(maxTime);
-        }
-        // Sort jobs by the minimum time they take to any worker in a descending
+        JobIndex index = set.getJobIndex();
+        // Jobs sorted by the minimum time they take to any worker in a descending
         // order.
-        Collections.sort(sortedJobs, JOB_MINTIME_ORDER_DESC);
-
-        //Create new vector of jobs that shall be assigned randomly
-        Vector<Job> randomJobs = new Vector<Job>(sortedJobs);
-        // Assign jobs selected for greedy assignment
-        for (int i = 0; i < greedyJobs; i++) {
-            Job job = sortedJobs.get(i);
-            // If possigle, assign job to the best worker and remove the job from
-            // randomJobs vector
-            if (solution.assign(job.getId(), job.getBestWorkerId())) {
-                randomJobs.remove(job);
+        int[] sortedJobs = index.getJobsByMinTimeDesc();
+
+        //List of jobs that shall be assigned randomly
+        IntArrayList randomJobs = workspace.candidates;
+        randomJobs.clear();
+        for (int i = 0; i < jobsCount; i++) {
+            int jobId = sortedJobs[i];
+            // Assign jobs selected for greedy assignment to the best worker if
+            // possible, the others are left to the random assignment
+            if (i >= greedyJobs || !solution.assign(jobId, index.getBestTimeWorker(jobId))) {
+                randomJobs.add(jobId);
             }
         }
 
         // How many times have we run?
         int level = 0;
-        Random generator = new Random();
+        SplittableRandom generator = random;
         while (level < 3 && greedyJobs >= 5) {
             // Reset job domains
             fillJobDomains();
@@ -480,21 +538,20 @@ public class GapProblem {
             updateJobDomains(-1);
             // Iterate through randomJobs and attempt to assign them randomly
             for (int i = 0; i < randomJobs.size(); i++) {
-                int jobId = randomJobs.get(i).getId();
-                if (!jobDomains.get(jobId).isEmpty()) {
-                    int workerPos = generator.nextInt(jobDomains.get(jobId).size());
-                    int workderId = jobDomains.get(jobId).get(workerPos).intValue();
+                int jobId = randomJobs.get(i);
+                if (!workspace.jobDomains.isEmpty(jobId)) {
+                    int workerPos = generator.nextInt(workspace.jobDomains.size(jobId));
+                    int workderId = workspace.jobDomains.get(jobId, workerPos);
                     solution.assign(jobId, workderId);
-                    jobDomains.get(jobId).remove(workerPos);
-                    updateJobDomains(-1);
+                    workspace.marks[i] = propagateAssignment(solution, jobId, workderId);
                 } else { //we have no option to assign the job, hence backtracking
                     i--;
                     if (i < 0) {
                         break; //no solution found
                     }
-                    jobId = randomJobs.get(i).getId();
+                    jobId = randomJobs.get(i);
                     solution.unassign(jobId);
-                    updateJobDomains(jobId);
+                    workspace.jobDomains.undo(workspace.marks[i]);
                     backtracksCount++;
                     i--;
                 }
@@ -507,29 +564,66 @@ public class GapProblem {
             level++;
             // Decrease the number of deterministic assignments
             int newGreedyJobs = greedyJobs / 2;
-            // Move some jobs from greedy assignment to random assigment
+            // Move some jobs from greedy assignment to random assigment. The
+            // failed pass has backtracked all random jobs, so the assigned
+            // ones are exactly those assigned greedily, the jobs which failed
+            // the greedy assignment are unassigned and listed already. Each
+            // job is listed once, so randomJobs fits workspace.marks.
             for (int i = newGreedyJobs; i < greedyJobs; i++) {
-                // Unassign the job
-                solution.unassign(sortedJobs.get(i).getId());
-                // Add the job to randomJobs vector
-                randomJobs.add(sortedJobs.get(i));
+                int jobId = sortedJobs[i];
+                if (solution.isAssigned(jobId)) {
+                    solution.unassign(jobId);
+                    randomJobs.add(jobId);
+                }
             }
-            // Sort the randomJobs vector again
-            Collections.sort(randomJobs, JOB_MINTIME_ORDER_DESC);
+            // Sort the randomJobs list again
+            sortByMinTimeDesc(randomJobs, index);
             greedyJobs = newGreedyJobs;
         }
         // Failed to assign few times, falling back to random
         if (!solution.allAssigned()) {
-            System.out.println("Peckish generator: FAILED, fallback to radnom generation.");
+            logger.info("Peckish generator: FAILED, fallback to random generation.");
+            // Start from scratch, the greedy assignments and the domains of
+            // the failed passes would break the backtracking
+            solution.clear();
+            fillJobDomains();
             return generateRandomSolution();
         }
         //This should never happen:
         return true;
     }
 
+    /**
+     * Sort the jobs by the minimum time they take to any worker and then by the
+     * maximum time in a descending order. The sort is stable. Insertion sort is
+     * used, as the list consists of a sorted part and few appended jobs.
+     */
+    private static void sortByMinTimeDesc(IntArrayList jobs, JobIndex index) {
+        for (int i = 1; i < jobs.size(); i++) {
+            int job = jobs.get(i);
+            int j = i - 1;
+            while (j >= 0 && compareByMinTimeDesc(jobs.get(j), job, index) > 0) {
+                jobs.set(j + 1, jobs.get(j));
+                j--;
+            }
+            jobs.set(j + 1, job);
+        }
+    }
+
+    private static int compareByMinTimeDesc(int job1, int job2, JobIndex index) {
+        if (index.getMinTime(job1) != index.getMinTime(job2)) {
+            return (index.getMinTime(job1) < index.getMinTime(job2)) ? 1 : -1;
+        }
+        if (index.getMaxTime(job1) != index.getMaxTime(job2)) {
+            return (index.getMaxTime(job1) < index.getMaxTime(job2)) ? 1 : -1;
+        }
+        return 0;
+    }
+
     public void clear() {
         solution.clear();
         backtracksCount = 0;
+        metrics = new SolverMetrics();
     }
 
     public GapSolution getSolution() {
@@ -550,17 +644,7 @@ public class GapProblem {
      * @return The lower bound.
      */
     public int getCostLowerBound(GapSettings set) {
-        int minimal_global_cost = 0;
-        for (int i = 0; i < jobsCount; i++) {
-            int min = Integer.MAX_VALUE;
-            for (int j = 0; j < workersCount; j++) {
-                if (min > set.getCost(j, i)) {
-                    min = set.getCost(j, i);
-                }
-            }
-            minimal_global_cost += min;
-        }
-        return minimal_global_cost;
+        return set.getJobIndex().getCostLowerBound();
     }
 
     // greedy algrithm with backtracing hungry for costs (with respect to time)
@@ -571,51 +655,23 @@ public class GapProblem {
      * @return True if a feasible solution has benn found, false otherwise.
      */
     public boolean generateGreedySolution() {
-        GapSettings set = solution.getSettings();
+        JobIndex index = solution.getSettings().getJobIndex();
         updateJobDomains(-1);
-        double[] min_cost = new double[jobsCount];
-        int[] jobs = new int[jobsCount];
-
-        for (int i = 0; i < jobsCount; i++) {
-            jobs[i] = i;
-            int min = Integer.MAX_VALUE;
-            for (int j = 0; j < workersCount; j++) {
-                if (min > set.getCost(j, i) * set.getTime(j, i)) {
-                    min = set.getCost(j, i) * set.getTime(j, i);
-                    min_cost[i] = min;
-                }
-            }
-        }
-
-        for (int i = 0; i < jobsCount - 1; i++) {
-            for (int j = i + 1; j < jobsCount; j++) {
-                if (min_cost[i] > min_cost[j]) {
-                    double tmp = min_cost[i];
-                    min_cost[i] = min_cost[j];
-                    min_cost[j] = tmp;
-                    tmp = jobs[i];
-                    jobs[i] = jobs[j];
-                    jobs[j] = (int) tmp;
-                }
-            }
-        }
+        /** Jobs sorted by their cheapest cost * time and the workers of each job
+         * sorted by cost * time. */
+        int[] jobs = index.getJobsByMinCostTime();
+        int[] sortedWorkers = index.getWorkersByCostTime();
 
         for (int i = 0; i < jobsCount; i++) {
             int job = jobs[i];
-            if (!jobDomains.get(job).isEmpty()) {
-                int min = Integer.MAX_VALUE;
-                int best_pos = -1;
-                for (int j = 0; j < jobDomains.get(job).size(); j++) {
-                    int worker = jobDomains.get(job).get(j).intValue();
-                    if (min > set.getCost(worker, job) * set.getTime(worker, job)) {
-                        min = set.getCost(worker, job) * set.getTime(worker, job);
-                        best_pos = j;
-                    }
+            if (!workspace.jobDomains.isEmpty(job)) {
+                /** The first worker in the ordering which is still in the domain. */
+                int best_worker = -1;
+                for (int pos = job * workersCount; best_worker == -1 || !workspace.jobDomains.contains(job, best_worker); pos++) {
+                    best_worker = sortedWorkers[pos];
                 }
-                int worker = jobDomains.get(job).get(best_pos).intValue();
-                solution.assign(job, worker, true);
-                jobDomains.get(job).remove(best_pos);
-                updateJobDomains(-1); // arc consistency on all not assigned variables
+                solution.assign(job, best_worker, true);
+                workspace.marks[i] = propagateAssignment(solution, job, best_worker); // arc consistency on all not assigned variables
 
             } else {
                 i = i - 1; // unassign previous
@@ -626,7 +682,7 @@ public class GapProblem {
                 }
                 backtracksCount++;
                 solution.unassign(jobs[i]);
-                updateJobDomains(jobs[i]);
+                workspace.jobDomains.undo(workspace.marks[i]);
                 i = i - 1; // just step back in for cycle to get to the unassign variable       
 
             }
@@ -634,56 +690,118 @@ public class GapProblem {
         return true;
     }
 
+    /**
+     * Parallel GRASP on a pool created for this run. The threads share the
+     * iteration budget of the sequential GRASP and the best solution found.
+     * @param numThreads Number of threads.
+     * @return True if there was feasible solution found, false otherwise.
+     */
     public boolean generateParalelGRASPSolution(int numThreads) {
-        Vector<SolverThread> threads = new Vector<SolverThread>(numThreads);
-        for (int i = 0; i < numThreads; i++) {
-            threads.add(new SolverThread(new GapProblem(this)));
-            threads.get(i).start();
-        }
-        for (int i = 0; i < numThreads; i++) {
-            try {
-                threads.get(i).join();
-            } catch (InterruptedException ex) {
-                Logger.getLogger(GapProblem.class.getName()).log(Level.SEVERE, null, ex);
-            }
+        return generateParalelGRASPSolution(numThreads, 0);
+    }
+
+    /**
+     * Parallel GRASP with a time limit on a pool created for this run.
+     * @param numThreads Number of threads.
+     * @param timeLimit Time limit in milliseconds, no limit if not positive.
+     * @return True if there was feasible solution found, false otherwise.
+     */
+    public boolean generateParalelGRASPSolution(int numThreads, long timeLimit) {
+        SolverPool pool = new SolverPool(numThreads);
+        try {
+            return generateParalelGRASPSolution(pool, timeLimit);
+        } finally {
+            pool.shutdown();
         }
+    }
 
-        GapSolution bestSolution = threads.get(0).getSolution();
+    /**
+     * Parallel GRASP on all threads of the pool. The search ends when the budget
+     * is exhausted or when any thread reaches the lower bound of the cost.
+     * @param pool Pool of solver threads.
+     * @return True if there was feasible solution found, false otherwise.
+     */
+    public boolean generateParalelGRASPSolution(SolverPool pool) {
+        return generateParalelGRASPSolution(pool, 0);
+    }
 
-        boolean foundSolution = false;
-        for (int i = 0; i < numThreads; i++) {
-            System.out.println("Thread num:" + threads.get(i).getId());
-            if (!threads.get(i).foundSolution()) {
-                System.out.println("Thread " + threads.get(i).getId() + ": Didn't find solution.");
-            } else {
-                foundSolution = true;
-                System.out.println("Thread " + threads.get(i).getId() + ": Found solution: \n" + threads.get(i).getSolution());
-                if (threads.get(i).getSolution().getGlobalCost() < bestSolution.getGlobalCost()) {
-                    bestSolution = threads.get(i).getSolution();
-                }
-            }
+    /**
+     * Parallel GRASP with a time limit on all threads of the pool. The best
+     * solution found before the time limit is kept.
+     * @param pool Pool of solver threads.
+     * @param timeLimit Time limit in milliseconds, no limit if not positive.
+     * @return True if there was feasible solution found, false otherwise.
+     */
+    public boolean generateParalelGRASPSolution(SolverPool pool, long timeLimit) {
+        GapSolution best;
+        try {
+            best = pool.solve(this, getDefaultGRASPIterations(), .5, timeLimit).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            return false;
         }
-        solution = bestSolution;
-        return foundSolution;
+        if (best == null) {
+            return false;
+        }
+        solution = new GapSolution(best, solution.getSettings());
+        return true;
     }
 
     /**
      * Perform the local search starting from a given solution.
-     * @return Local minima found.
+     * @return Local minima found. The solution is owned by the problem and it is
+     *  overwritten by the next local search, copy it to keep it.
      */
     public GapSolution localSearch(GapSolution gs) {
-        GapSolution bestSolution = new GapSolution(gs, gs.getSettings());
-        GapSettings settings = bestSolution.getSettings();
-        GapSolution bestFeasible = new GapSolution(gs, gs.getSettings());
+        return localSearch(gs, null);
+    }
+
+    /**
+     * Perform the local search starting from a given solution. The search is
+     * interrupted when the search context is stopped or its time limit passes.
+     * @param context Shared state of the search, may be null.
+     * @return The best feasible solution found, owned by the problem, see localSearch(GapSolution).
+     */
+    public GapSolution localSearch(GapSolution gs, GraspContext context) {
+        return localSearch(gs, context, random);
+    }
+
+    /**
+     * Perform the local search using the given random generator for the perturbations.
+     * @param context Shared state of the search, may be null.
+     * @param generator Random generator of the search.
+     * @return The best feasible solution found, owned by the problem, see localSearch(GapSolution).
+     */
+    public GapSolution localSearch(GapSolution gs, GraspContext context, SplittableRandom generator) {
+        /** The solutions are owned by the workspace, the current solution and its
+         * neighbour are exchanged after each step instead of copying. */
+        long start = System.nanoTime();
+        GapSolution bestSolution = workspace.current;
+        GapSolution newSolution = workspace.neighbour;
+        GapSolution bestFeasible = workspace.bestFeasible;
+        Move move = workspace.move;
+        bestSolution.copyFrom(gs);
+        bestFeasible.copyFrom(gs);
         int bestCost = bestSolution.getGlobalCost();
         int lowerBound = getCostLowerBound(bestSolution.getSettings());
         int idle_iter = 0;
         while (idle_iter < 100) { //We do 100 perturbation at most
+            if (context != null && context.isFinished()) {
+                break;
+            }
             /** Find the best neighbour */
-            GapSolution newSolution = bestSolution.getBestNeighbour(false);
+            bestSolution.getBestMove(false, parallelNeighbourhood, move, metrics);
+            if (move.getType() != Move.NONE) {
+                metrics.recordImprovingMove();
+            }
+            newSolution.copyFrom(bestSolution);
+            move.apply(newSolution);
 
             if (newSolution.isFeasible() && newSolution.getGlobalCost() < bestCost) {
-                bestFeasible = new GapSolution(newSolution, settings);
+                bestFeasible.copyFrom(newSolution);
                 bestCost = bestFeasible.getGlobalCost();
                 if (bestCost == lowerBound) {
                     break;
@@ -691,11 +809,15 @@ public class GapProblem {
             }
             /** No better neighbour found, perturb the solution.*/
             if (newSolution.equals(bestSolution)) {
-                bestSolution.perturb();
+                bestSolution.perturb(generator);
+                metrics.recordPerturbation();
                 idle_iter++;
             }
-            bestSolution = new GapSolution(newSolution, settings); //best solution this far
+            GapSolution tmp = bestSolution; //best solution this far
+            bestSolution = newSolution;
+            newSolution = tmp;
         }
+        metrics.recordLocalSearch(System.nanoTime() - start);
         return bestFeasible;
     }
 }
@@ -1,31 +1,206 @@
 package gap;
 
+import java.nio.IntBuffer;
+
 /**
- * Class keeping input values of the problem.
+ * Class keeping input values of the problem. Costs and times are stored in
+ * worker-major order, i.e., value of worker w and job j is at w * jobsCount + j.
+ * The values are kept in int buffers, so that they can be backed either by
+ * arrays or directly by a memory mapped binary file.
+ *
+ * Algorithms iterating over workers of a job should use the job-major arrays,
+ * where value of job j and worker w is at j * workersCount + w, or the packed
+ * array with cost and time of each pair next to each other. Algorithms iterating
+ * over jobs of a worker should use the worker-major arrays. The arrays are
+ * created on the first access and shared by all threads, as is the JobIndex
+ * with sorted orderings used by the solution generators.
  */
 public class GapSettings {
 
-    private int[] workerLimitTime;
-    private int[][] workerJobCost;
-    private int[][] workerJobTime;
+    private int workersCount;
+    private int jobsCount;
+    private IntBuffer workerLimitTime;
+    private IntBuffer workerJobCost;
+    private IntBuffer workerJobTime;
+    /** Sum of the time limits of all workers. */
+    private int totalLimitTime;
+    /** Flat arrays of the values in different layouts, created on the first access. */
+    private volatile int[] workerMajorCosts;
+    private volatile int[] workerMajorTimes;
+    private volatile int[] jobMajorCosts;
+    private volatile int[] jobMajorTimes;
+    private volatile int[] jobMajorCostTimes;
+    /** Sorted orderings of the workers and jobs, created on the first access. */
+    private volatile JobIndex jobIndex;
     
     public GapSettings(int[][] _workerJobCost, int[][] _workerJobTime, int [] _workerLimitTime) {
-        workerJobCost = _workerJobCost.clone();
-        workerJobTime = _workerJobTime.clone();
-        workerLimitTime = _workerLimitTime.clone();
+        this(_workerLimitTime.length, (_workerLimitTime.length == 0) ? 0 : _workerJobCost[0].length,
+                IntBuffer.wrap(flatten(_workerJobCost)), IntBuffer.wrap(flatten(_workerJobTime)),
+                IntBuffer.wrap(_workerLimitTime.clone()));
+    }
+
+    /**
+     * Create the settings backed by the given buffers, the values are not copied.
+     * @param _workersCount Number of workers.
+     * @param _jobsCount Number of jobs.
+     * @param _workerJobCost Costs in worker-major order.
+     * @param _workerJobTime Times in worker-major order.
+     * @param _workerLimitTime Time limits of the workers.
+     */
+    public GapSettings(int _workersCount, int _jobsCount, IntBuffer _workerJobCost, IntBuffer _workerJobTime, IntBuffer _workerLimitTime) {
+        workersCount = _workersCount;
+        jobsCount = _jobsCount;
+        workerJobCost = _workerJobCost;
+        workerJobTime = _workerJobTime;
+        workerLimitTime = _workerLimitTime;
+        totalLimitTime = 0;
+        for (int i = 0; i < workersCount; i++) {
+            totalLimitTime += workerLimitTime.get(i);
+        }
+    }
+
+    private static int[] flatten(int[][] matrix) {
+        int columns = (matrix.length == 0) ? 0 : matrix[0].length;
+        int[] flat = new int[matrix.length * columns];
+        for (int i = 0; i < matrix.length; i++) {
+            System.arraycopy(matrix[i], 0, flat, i * columns, columns);
+        }
+        return flat;
+    }
+
+    public int getWorkersCount(){
+        return workersCount;
+    }
+
+    public int getJobsCount(){
+        return jobsCount;
     }
-    
     
     public int getTime(int worker, int job){
-        return workerJobTime[worker][job];
+        return workerJobTime.get(worker * jobsCount + job);
     }
     
     public int getCost(int worker, int job){
-        return workerJobCost[worker][job];
+        return workerJobCost.get(worker * jobsCount + job);
     }
     
     public int getLimitTime(int worker){
-        return workerLimitTime[worker];
+        return workerLimitTime.get(worker);
+    }
+
+    public int getTotalLimitTime(){
+        return totalLimitTime;
+    }
+
+    /**
+     * Costs in worker-major order, cost of worker w and job j is at w * jobsCount + j.
+     * The array must not be modified.
+     */
+    public int[] getWorkerMajorCosts(){
+        int[] values = workerMajorCosts;
+        if (values == null) {
+            values = toArray(workerJobCost);
+            workerMajorCosts = values;
+        }
+        return values;
+    }
+
+    /**
+     * Times in worker-major order, time of worker w and job j is at w * jobsCount + j.
+     * The array must not be modified.
+     */
+    public int[] getWorkerMajorTimes(){
+        int[] values = workerMajorTimes;
+        if (values == null) {
+            values = toArray(workerJobTime);
+            workerMajorTimes = values;
+        }
+        return values;
+    }
+
+    /**
+     * Costs in job-major order, cost of job j and worker w is at j * workersCount + w.
+     * The array must not be modified.
+     */
+    public int[] getJobMajorCosts(){
+        int[] values = jobMajorCosts;
+        if (values == null) {
+            values = transpose(workerJobCost);
+            jobMajorCosts = values;
+        }
+        return values;
+    }
+
+    /**
+     * Times in job-major order, time of job j and worker w is at j * workersCount + w.
+     * The array must not be modified.
+     */
+    public int[] getJobMajorTimes(){
+        int[] values = jobMajorTimes;
+        if (values == null) {
+            values = transpose(workerJobTime);
+            jobMajorTimes = values;
+        }
+        return values;
+    }
+
+    /**
+     * Costs and times in job-major order packed together, cost of job j and
+     * worker w is at 2 * (j * workersCount + w) and the time follows it.
+     * The array must not be modified.
+     */
+    public int[] getJobMajorCostTimes(){
+        int[] values = jobMajorCostTimes;
+        if (values == null) {
+            values = new int[2 * workersCount * jobsCount];
+            for (int i = 0; i < workersCount; i++) {
+                for (int j = 0; j < jobsCount; j++) {
+                    int index = 2 * (j * workersCount + i);
+                    values[index] = getCost(i, j);
+                    values[index + 1] = getTime(i, j);
+                }
+            }
+            jobMajorCostTimes = values;
+        }
+        return values;
+    }
+
+    /**
+     * Index of the workers of each job sorted by time and cost, shared by all
+     * solution generators and threads.
+     */
+    public JobIndex getJobIndex(){
+        JobIndex index = jobIndex;
+        if (index == null) {
+            index = new JobIndex(this);
+            jobIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Copy worker-major values to an array, the backing array is used if there is one.
+     */
+    private int[] toArray(IntBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == workersCount * jobsCount) {
+            return buffer.array();
+        }
+        int[] values = new int[workersCount * jobsCount];
+        buffer.duplicate().get(values);
+        return values;
+    }
+
+    /**
+     * Copy worker-major values to a job-major array.
+     */
+    private int[] transpose(IntBuffer buffer) {
+        int[] values = new int[workersCount * jobsCount];
+        for (int i = 0; i < workersCount; i++) {
+            for (int j = 0; j < jobsCount; j++) {
+                values[j * workersCount + i] = buffer.get(i * jobsCount + j);
+            }
+        }
+        return values;
     }
     
 }
@@ -1,17 +1,45 @@
 package gap;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Class representing a single solution of the GAP problem.
+ *
+ * Besides the worker of each job, the solution keeps the jobs of each worker in
+ * intrusive doubly-linked lists over int arrays, updated by every change of
+ * the assignment in constant time. Jobs of a worker are iterated by
+ * getFirstJob(worker) and getNextJob(job), in no particular order.
  */
 public class GapSolution {
 
+    /** Number of job ranges per thread in the parallel neighbourhood evaluation. */
+    private static final int RANGES_PER_THREAD = 4;
+
     private int[] assignment; // jobs to workers
+    /** First job of each worker, -1 if the worker has no jobs. */
+    private int[] firstJob;
+    /** Next and previous job of the same worker, -1 at the ends of the list. */
+    private int[] nextJob;
+    private int[] prevJob;
+    /** Number of jobs of each worker. */
+    private int[] workerJobsCount;
     private int jobsCount;
     private int workersCount;
     private int globalCost;
     private int[] workerTotalTime;
+    /** Sum of the time overdues of all workers. */
+    private int totalOverTime;
+    /** Number of workers whose total time exceeds their limit. */
+    private int overloadedCount;
+    /** Number of jobs without a worker. */
+    private int unassignedCount;
     private GapSettings settings;
 
     public GapSolution(int _jobsCount, int _workersCount, GapSettings _settings) {
@@ -23,7 +51,15 @@ public class GapSolution {
         }
         workersCount = _workersCount;
         workerTotalTime = new int[workersCount];
+        firstJob = new int[workersCount];
+        Arrays.fill(firstJob, -1);
+        nextJob = new int[jobsCount];
+        prevJob = new int[jobsCount];
+        workerJobsCount = new int[workersCount];
         globalCost = 0;
+        totalOverTime = 0;
+        overloadedCount = 0;
+        unassignedCount = jobsCount;
     }
 
     public GapSolution(GapSolution solution, GapSettings _settings) {
@@ -32,19 +68,40 @@ public class GapSolution {
         workersCount = solution.getWorkersCount();
         globalCost = solution.getGlobalCost();
         workerTotalTime = solution.getWorkerTotalTime().clone();
+        firstJob = solution.firstJob.clone();
+        nextJob = solution.nextJob.clone();
+        prevJob = solution.prevJob.clone();
+        workerJobsCount = solution.workerJobsCount.clone();
+        totalOverTime = solution.totalOverTime;
+        overloadedCount = solution.overloadedCount;
+        unassignedCount = solution.unassignedCount;
         settings = _settings;
     }
 
+    /**
+     * Overwrite the solution with a copy of another one of the same problem,
+     * the arrays of the solution are reused.
+     * @param solution Solution to copy.
+     */
+    public void copyFrom(GapSolution solution) {
+        System.arraycopy(solution.assignment, 0, assignment, 0, jobsCount);
+        System.arraycopy(solution.workerTotalTime, 0, workerTotalTime, 0, workersCount);
+        System.arraycopy(solution.firstJob, 0, firstJob, 0, workersCount);
+        System.arraycopy(solution.nextJob, 0, nextJob, 0, jobsCount);
+        System.arraycopy(solution.prevJob, 0, prevJob, 0, jobsCount);
+        System.arraycopy(solution.workerJobsCount, 0, workerJobsCount, 0, workersCount);
+        globalCost = solution.globalCost;
+        totalOverTime = solution.totalOverTime;
+        overloadedCount = solution.overloadedCount;
+        unassignedCount = solution.unassignedCount;
+        settings = solution.settings;
+    }
+
     /**
      * Returns true if all jobs are assigned, false otherwise.
      */
     public boolean allAssigned() {
-        for (int i = 0; i < jobsCount; i++) {
-            if (getWorker(i) == -1) {
-                return false;
-            }
-        }
-        return true;
+        return unassignedCount == 0;
     }
 
     /**
@@ -56,7 +113,86 @@ public class GapSolution {
     }
 
     public void removeWorker(int job) {
-        assignment[job] = -1;
+        setWorker(job, -1);
+    }
+
+    /**
+     * Change the worker of the job, keep the count of unassigned jobs and move
+     * the job between the job lists of the workers.
+     */
+    private void setWorker(int job, int worker) {
+        int old = assignment[job];
+        if (old == -1) {
+            unassignedCount--;
+        } else {
+            int prev = prevJob[job];
+            int next = nextJob[job];
+            if (prev == -1) {
+                firstJob[old] = next;
+            } else {
+                nextJob[prev] = next;
+            }
+            if (next != -1) {
+                prevJob[next] = prev;
+            }
+            workerJobsCount[old]--;
+        }
+        if (worker == -1) {
+            unassignedCount++;
+        } else {
+            int first = firstJob[worker];
+            prevJob[job] = -1;
+            nextJob[job] = first;
+            if (first != -1) {
+                prevJob[first] = job;
+            }
+            firstJob[worker] = job;
+            workerJobsCount[worker]++;
+        }
+        assignment[job] = worker;
+    }
+
+    /**
+     * First job in the list of the worker's jobs.
+     * @param worker Id of the worker.
+     * @return Id of the job, -1 if the worker has no jobs.
+     */
+    public int getFirstJob(int worker) {
+        return firstJob[worker];
+    }
+
+    /**
+     * Next job of the same worker as the given job.
+     * @param job Id of an assigned job.
+     * @return Id of the next job, -1 if the job is the last one.
+     */
+    public int getNextJob(int job) {
+        return nextJob[job];
+    }
+
+    /**
+     * Number of jobs assigned to the worker.
+     * @param worker Id of the worker.
+     */
+    public int getWorkerJobsCount(int worker) {
+        return workerJobsCount[worker];
+    }
+
+    /**
+     * Change total time of the worker and update the time overdues.
+     */
+    private void addWorkerTime(int worker, int time) {
+        int limit = settings.getLimitTime(worker);
+        int oldTime = workerTotalTime[worker];
+        int newTime = oldTime + time;
+        workerTotalTime[worker] = newTime;
+        totalOverTime += overdue(worker, newTime) - overdue(worker, oldTime);
+        if (oldTime > limit) {
+            overloadedCount--;
+        }
+        if (newTime > limit) {
+            overloadedCount++;
+        }
     }
 
     public boolean isAssigned(int job) {
@@ -101,8 +237,8 @@ public class GapSolution {
         if (!infeasibility && !canFeasiblyAssign(job, worker)) {
             return false; // we don't want infeasible solutions
         }
-        assignment[job] = worker;
-        workerTotalTime[worker] += settings.getTime(worker, job);
+        setWorker(job, worker);
+        addWorkerTime(worker, settings.getTime(worker, job));
         globalCost += settings.getCost(worker, job);
 
         return true;
@@ -143,7 +279,7 @@ public class GapSolution {
         removeWorker(job);
 
         if (update) {
-            workerTotalTime[prev_worker] -= settings.getTime(prev_worker, job);
+            addWorkerTime(prev_worker, -settings.getTime(prev_worker, job));
             globalCost -= settings.getCost(prev_worker, job);
         }
         return prev_worker;
@@ -154,12 +290,7 @@ public class GapSolution {
      * @return True if the solution is feasible, false otherwise.
      */
     public boolean isFeasible() {
-        for (int i = 0; i < workersCount; i++) {
-            if (workerTotalTime[i] > settings.getLimitTime(i)) {
-                return false;
-            }
-        }
-        return true;
+        return overloadedCount == 0;
     }
 
     public int[] getAssignment() {
@@ -184,16 +315,21 @@ public class GapSolution {
      * @return The ratio
      */
     public double overTime() {
-        double over = 0;
-        int global_time = 0;
-        for (int i = 0; i < workersCount; i++) {
-            if (workerTotalTime[i] > settings.getLimitTime(i)) {
-                over += workerTotalTime[i] - settings.getLimitTime(i);
-            }
-            global_time += settings.getLimitTime(i);
-        }
+        return overTimeRatio(totalOverTime);
+    }
+
+    /**
+     * Time overdue of the worker if his total time was the given one.
+     */
+    private int overdue(int worker, int time) {
+        int limit = settings.getLimitTime(worker);
+        return (time > limit) ? time - limit : 0;
+    }
+
+    private double overTimeRatio(int over) {
+        int global_time = settings.getTotalLimitTime();
         if (global_time != 0) {
-            return over / global_time;
+            return (double) over / global_time;
         } else {
             return 0;
         }
@@ -230,6 +366,8 @@ public class GapSolution {
         }
 
         globalCost = 0;
+        totalOverTime = 0;
+        overloadedCount = 0;
     }
 
     /**
@@ -238,7 +376,15 @@ public class GapSolution {
      * @return Value of the penalty.
      */
     public double getPenalty() {
-        return globalCost * (1 + overTime());
+        return penalty(globalCost, totalOverTime);
+    }
+
+    /**
+     * Calculate penalty of a solution with the given global cost and sum of time
+     * overdues. Used for evaluation of neighbours without constructing them.
+     */
+    private double penalty(int cost, int over) {
+        return cost * (1 + overTimeRatio(over));
     }
 
     /**
@@ -262,16 +408,31 @@ public class GapSolution {
      * @return True if resulting assignment is feasible, false otherwise.
      */
     public boolean swapWorkers(int id1, int id2) {
-        for (int i = 0; i < jobsCount; i++) {
-            if (assignment[i] == id1) {
-                moveJob(id2, i);
-                continue;
-            }
-            if (assignment[i] == id2) {
-                moveJob(id1, i);
-                continue;
-            }
+        if (id1 == id2) {
+            return isFeasible();
+        }
+        /** The job lists are exchanged as a whole, only the jobs of the two
+         * workers are visited to update their worker, times and costs. */
+        int time1 = 0;
+        int time2 = 0;
+        for (int job = firstJob[id1]; job != -1; job = nextJob[job]) {
+            assignment[job] = id2;
+            time2 += settings.getTime(id2, job);
+            globalCost += settings.getCost(id2, job) - settings.getCost(id1, job);
+        }
+        for (int job = firstJob[id2]; job != -1; job = nextJob[job]) {
+            assignment[job] = id1;
+            time1 += settings.getTime(id1, job);
+            globalCost += settings.getCost(id1, job) - settings.getCost(id2, job);
         }
+        int tmp = firstJob[id1];
+        firstJob[id1] = firstJob[id2];
+        firstJob[id2] = tmp;
+        tmp = workerJobsCount[id1];
+        workerJobsCount[id1] = workerJobsCount[id2];
+        workerJobsCount[id2] = tmp;
+        addWorkerTime(id1, time1 - workerTotalTime[id1]);
+        addWorkerTime(id2, time2 - workerTotalTime[id2]);
         return isFeasible();
     }
 
@@ -294,32 +455,68 @@ public class GapSolution {
      */
     public boolean moveJob(int worker, int job, boolean update) {
         unassign(job, update);
-        assignment[job] = worker;
+        setWorker(job, worker);
         if (update) {
-            workerTotalTime[worker] += settings.getTime(worker, job);
+            addWorkerTime(worker, settings.getTime(worker, job));
             globalCost += settings.getCost(worker, job);
         }
         return workerTotalTime[worker] <= settings.getLimitTime(worker);
     }
 
+    /**
+     * Group the assigned jobs by their workers in one pass over the jobs.
+     * @param starts Array of workersCount + 1 elements, filled with the positions
+     *  of the groups: jobs of worker i are at starts[i] to starts[i + 1] - 1 of
+     *  the returned array.
+     * @return Assigned jobs sorted by their workers and then by their ids.
+     */
+    public int[] getJobsByWorker(int[] starts) {
+        starts[0] = 0;
+        for (int i = 0; i < workersCount; i++) {
+            starts[i + 1] = starts[i] + workerJobsCount[i];
+        }
+        int[] jobs = new int[starts[workersCount]];
+        int[] next = Arrays.copyOf(starts, workersCount);
+        for (int j = 0; j < jobsCount; j++) {
+            if (assignment[j] >= 0) {
+                jobs[next[assignment[j]]++] = j;
+            }
+        }
+        return jobs;
+    }
+
     /**
      * Output the solution as simple table displaying worker/job assignments,
      * time required for each worker and global cost of the solution.
      */
     @Override
     public String toString() {
-        String output = "Solution:\n";
+        StringWriter output = new StringWriter();
+        try {
+            write(output);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Write the table of toString() in one pass over the jobs.
+     * @param out Output, it is not flushed.
+     */
+    public void write(Writer out) throws IOException {
+        int[] starts = new int[workersCount + 1];
+        int[] jobs = getJobsByWorker(starts);
+        out.write("Solution:\n");
         for (int i = 0; i < workersCount; i++) {
-            output += "worker " + (i + 1) + ": items: ";
-            for (int j = 0; j < jobsCount; j++) {
-                if (getWorker(j) == i) {
-                    output += (j + 1) + ", ";
-                }
+            out.write("worker " + (i + 1) + ": items: ");
+            for (int k = starts[i]; k < starts[i + 1]; k++) {
+                out.write(Integer.toString(jobs[k] + 1));
+                out.write(", ");
             }
-            output += " total time used: " + getWorkerTime(i) + "/" + settings.getLimitTime(i) + "\n";
+            out.write(" total time used: " + getWorkerTime(i) + "/" + settings.getLimitTime(i) + "\n");
         }
-        output += "Total Cost: " + getGlobalCost();
-        return output;
+        out.write("Total Cost: " + getGlobalCost());
     }
 
     /**
@@ -327,25 +524,39 @@ public class GapSolution {
      * @return Text that should be written to .svg file.
      */
     public String toSVG() {
+        StringWriter output = new StringWriter();
+        try {
+            writeSVG(output);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return output.toString();
+    }
+
+    /**
+     * Write the graphical representation of toSVG().
+     * @param out Output, it is not flushed.
+     */
+    public void writeSVG(Writer out) throws IOException {
         int width = 1300;
         int height = workersCount * 110;
 
-        String result = "<?xml version=\"1.0\"?>";
-        result += "<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\"";
-        result += "\n\"http://www.w3.org/Graphics/SVG/1.1/DTD/svg11.dtd\">";
-        result += "\n<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\"";
-        result += "\nwidth=\"" + width + "\" height=\"" + (height + 300) + "\">";
-        result += "\n<desc>GAP solution</desc>";
-        result += "\n<g transform=\"translate(50,50)\">";
+        out.write("<?xml version=\"1.0\"?>");
+        out.write("<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\"");
+        out.write("\n\"http://www.w3.org/Graphics/SVG/1.1/DTD/svg11.dtd\">");
+        out.write("\n<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\"");
+        out.write("\nwidth=\"" + width + "\" height=\"" + (height + 300) + "\">");
+        out.write("\n<desc>GAP solution</desc>");
+        out.write("\n<g transform=\"translate(50,50)\">");
 
         // axes
-        result += "\n<!-- Now Draw the main X and Y axis -->";
-        result += "\n<g style=\"stroke-width:5; stroke:black\">";
-        result += "\n<!-- X Axis -->";
-        result += "\n<path d=\"M 0 " + (height + 50) + " L 1000 " + (height + 50) + " Z\"/>";
-        result += "\n<!-- Y Axis -->";
-        result += "\n<path d=\"M 0 0 L 0 " + (height + 50) + " Z\"/>";
-        result += "\n</g>";
+        out.write("\n<!-- Now Draw the main X and Y axis -->");
+        out.write("\n<g style=\"stroke-width:5; stroke:black\">");
+        out.write("\n<!-- X Axis -->");
+        out.write("\n<path d=\"M 0 " + (height + 50) + " L 1000 " + (height + 50) + " Z\"/>");
+        out.write("\n<!-- Y Axis -->");
+        out.write("\n<path d=\"M 0 0 L 0 " + (height + 50) + " Z\"/>");
+        out.write("\n</g>");
 
         int maxTime = workerTotalTime[0];
         for (int i = 1; i < workersCount; i++) {
@@ -368,24 +579,23 @@ public class GapSolution {
             int x = 3;
             int y = i * 110 + 50;
             int length = getWorkerTime(i) * lengthCoeff;
-            result += "\n<rect x=\"" + x + "\" y=\"" + y + "\" width =\"" + length + "\" height=\"" + 100 + "\" style=\"fill:rgb(74,129,247);\" /> ";
+            out.write("\n<rect x=\"" + x + "\" y=\"" + y + "\" width =\"" + length + "\" height=\"" + 100 + "\" style=\"fill:rgb(74,129,247);\" /> ");
 
 
             int limit = settings.getLimitTime(i) * lengthCoeff;
             if (getWorkerTime(i) < settings.getLimitTime(i)) {
-                result += "\n<rect x=\"" + (x + length) + "\" y=\"" + y + "\" width =\"" + (limit - length) + "\" height=\"" + 100 + "\" style=\"fill:rgb(141,233,355);\" /> ";
+                out.write("\n<rect x=\"" + (x + length) + "\" y=\"" + y + "\" width =\"" + (limit - length) + "\" height=\"" + 100 + "\" style=\"fill:rgb(141,233,355);\" /> ");
             } else if (getWorkerTime(i) != settings.getLimitTime(i)) {
-                result += "\n<rect x=\"" + limit + "\" y=\"" + y + "\" width =\"" + length + "\" height=\"" + 100 + "\" style=\"fill:rgb(191,0,1);\" /> ";
+                out.write("\n<rect x=\"" + limit + "\" y=\"" + y + "\" width =\"" + length + "\" height=\"" + 100 + "\" style=\"fill:rgb(191,0,1);\" /> ");
             }
         }
-        result += "\n</g>";
+        out.write("\n</g>");
 
         for(int i=0; i< workersCount; i++){
             int y = i*110 + 160;
-            result += "<text x=\"3\"  y=\""+ y +"\" style=\"font-size: 34px;\">"+ i +"</text>";
+            out.write("<text x=\"3\"  y=\""+ y +"\" style=\"font-size: 34px;\">"+ i +"</text>");
         }
-     	result += "\n</svg>";
-        return result;
+        out.write("\n</svg>");
     }
 
     public GapSettings getSettings() {
@@ -409,32 +619,72 @@ public class GapSolution {
      * @return The best neighbour found.
      */
     public GapSolution getBestNeighbour(boolean feasible) {
-        double bestCost = getPenalty();
-        double neighCost;
+        return getBestNeighbour(feasible, false);
+    }
+
+    /**
+     * Find the best neighbour of the solution, see getBestNeighbour(boolean).
+     * @param feasible True requires the neighbour to be feasible.
+     * @param parallel True if the job move and two-job swap steps should be
+     *  evaluated in parallel. The job range is split between the threads of the
+     *  common fork-join pool and the best moves of the ranges are reduced, the
+     *  result is the same as for the sequential evaluation.
+     * @return The best neighbour found.
+     */
+    public GapSolution getBestNeighbour(boolean feasible, boolean parallel) {
         GapSolution bestSolution = new GapSolution(this, getSettings());
-        GapSolution neighSolution = new GapSolution(this, getSettings());
-        /** Step 1: Move job to another worker. */
-        neighSolution = getBestJobMoveNeighbour(feasible);
-        neighCost = neighSolution.getPenalty();
-        if ((neighCost < bestCost) && (!feasible || neighSolution.isFeasible())) {
-            bestSolution = new GapSolution(neighSolution, this.getSettings());
-            bestCost = neighCost;
-        }
-        /** Step 2: Swap assignment of two jobs */
-        neighSolution = getBestTwoJobSwapNeighbour(feasible);
-        neighCost = neighSolution.getPenalty();
-        if ((neighCost < bestCost) && (!feasible || neighSolution.isFeasible())) {
-            bestSolution = new GapSolution(neighSolution, getSettings());
-            bestCost = neighCost;
+        getBestMove(feasible, parallel, new Move(0)).apply(bestSolution);
+        return bestSolution;
+    }
+
+    /**
+     * Find the step to the best neighbour of the solution, see getBestNeighbour(boolean).
+     * The solution is not modified and nothing is allocated unless parallel
+     * evaluation is used, so the local search can reuse its solutions and move.
+     * @param feasible True requires the neighbour to be feasible.
+     * @param parallel True if the job move and two-job swap steps should be
+     *  evaluated in parallel.
+     * @param move Move to store the result to, its previous content is discarded.
+     * @return The move, empty if there is no neighbour better than the solution.
+     */
+    public Move getBestMove(boolean feasible, boolean parallel, Move move) {
+        return getBestMove(feasible, parallel, move, null);
+    }
+
+    /**
+     * Find the step to the best neighbour, see getBestMove(boolean, boolean, Move).
+     * @param metrics Metrics to record the evaluated neighbourhoods to, may be null.
+     */
+    public Move getBestMove(boolean feasible, boolean parallel, Move move, SolverMetrics metrics) {
+        long start = (metrics != null) ? System.nanoTime() : 0;
+        if (parallel) {
+            move.copyFrom(getBestMoveParallel(feasible, metrics));
+        } else {
+            /** The best move is shared by all steps, each of them only accepts
+             * moves better than the ones already found. */
+            move.reset(getPenalty());
+            /** Step 1: Move job to another worker. */
+            findBestJobMove(feasible, move, 0, jobsCount);
+            if (metrics != null) {
+                long now = System.nanoTime();
+                metrics.recordNeighbourhood(Move.JOB_MOVE, (long) jobsCount * (workersCount - 1), now - start);
+                start = now;
+            }
+            /** Step 2: Swap assignment of two jobs */
+            findBestTwoJobSwap(feasible, move, 0, jobsCount);
+            if (metrics != null) {
+                long now = System.nanoTime();
+                metrics.recordNeighbourhood(Move.JOB_SWAP, (long) jobsCount * (jobsCount - 1) / 2, now - start);
+                start = now;
+            }
         }
         /** Step 3: Swap all jobs between two workers. */
-        neighSolution = getBestAllJobsSwapNeihgbour(feasible);
-        neighCost = neighSolution.getPenalty();
-        if ((neighCost < bestCost) && (!feasible || neighSolution.isFeasible())) {
-            bestSolution = new GapSolution(neighSolution, getSettings());
-            bestCost = neighCost;
+        findBestAllJobsSwap(feasible, move);
+        if (metrics != null) {
+            metrics.recordNeighbourhood(Move.WORKER_SWAP, (long) workersCount * (workersCount - 1) / 2,
+                    System.nanoTime() - start);
         }
-        return bestSolution;
+        return move;
     }
 
     /**
@@ -444,25 +694,58 @@ public class GapSolution {
      * @return The best neighbour found.
      */
     public GapSolution getBestJobMoveNeighbour(boolean feasible) {
-        double bestCost = getPenalty();
         GapSolution bestSolution = new GapSolution(this, getSettings());
-        for (int i = 0; i < jobsCount; i++) {
-            GapSolution neighSolution = new GapSolution(this, getSettings());
-            int old_worker = neighSolution.getWorker(i);
+        getBestJobMove(feasible).apply(bestSolution);
+        return bestSolution;
+    }
+
+    /**
+     * Find the best move of a job to another worker. The moves are evaluated
+     * from the worker times and the global cost, the solution is not modified.
+     * @param feasible Determines if the neighbour found should be feasible or not.
+     * @return The best move found, or an empty move if there is no neighbour
+     *  better than the solution.
+     */
+    public Move getBestJobMove(boolean feasible) {
+        Move best = new Move(getPenalty());
+        findBestJobMove(feasible, best, 0, jobsCount);
+        return best;
+    }
+
+    /**
+     * Find the best move of a job from the given range to another worker.
+     * @param feasible Determines if the neighbour found should be feasible or not.
+     * @param best The best move found so far, replaced by a better job move.
+     * @param from First job of the range.
+     * @param to Job after the last one of the range.
+     */
+    private void findBestJobMove(boolean feasible, Move best, int from, int to) {
+        int over = totalOverTime;
+        /** Workers of a job are scanned, use the packed job-major layout. */
+        int[] costTimes = settings.getJobMajorCostTimes();
+        for (int i = from; i < to; i++) {
+            int old_worker = getWorker(i);
+            if (old_worker == -1) {
+                continue;
+            }
+            int row = 2 * i * workersCount;
+            /** Cost and overdue of the solution without the job. */
+            int old_time = workerTotalTime[old_worker] - costTimes[row + 2 * old_worker + 1];
+            int cost = globalCost - costTimes[row + 2 * old_worker];
+            int over_unassigned = over - overdue(old_worker, workerTotalTime[old_worker])
+                    + overdue(old_worker, old_time);
             for (int j = 0; j < workersCount; j++) {
-                if (j != old_worker) {
-                    neighSolution.unassign(i);
-                    neighSolution.assign(i, j, true);
-                    double cost = neighSolution.getPenalty();
-                    if ((cost < bestCost) && (!feasible || neighSolution.isFeasible())) {
-                        bestSolution = new GapSolution(neighSolution, getSettings());
-                        bestCost = cost;
-                    }
+                if (j == old_worker) {
+                    continue;
+                }
+                int new_over = over_unassigned - overdue(j, workerTotalTime[j])
+                        + overdue(j, workerTotalTime[j] + costTimes[row + 2 * j + 1]);
+                double neighCost = penalty(cost + costTimes[row + 2 * j], new_over);
+                if ((neighCost < best.getPenalty()) && (!feasible || new_over == 0)) {
+                    best.setJobMove(i, j, neighCost);
                 }
             }
-
         }
-        return bestSolution;
     }
 
     /**
@@ -472,28 +755,122 @@ public class GapSolution {
      * @return The best neighbour found.
      */
     public GapSolution getBestTwoJobSwapNeighbour(boolean feasible) {
-        double bestCost = getPenalty();
         GapSolution bestSolution = new GapSolution(this, getSettings());
-        for (int i = 0; i < jobsCount; i++) {
+        getBestTwoJobSwap(feasible).apply(bestSolution);
+        return bestSolution;
+    }
+
+    /**
+     * Find the best swap of workers assigned to a pair of jobs. Each pair is
+     * evaluated from the times of the two affected workers and the cost change,
+     * the solution is not modified.
+     * @param feasible Determines if the neighbour found should be feasible or not.
+     * @return The best swap found, or an empty move if there is no neighbour
+     *  better than the solution.
+     */
+    public Move getBestTwoJobSwap(boolean feasible) {
+        Move best = new Move(getPenalty());
+        findBestTwoJobSwap(feasible, best, 0, jobsCount);
+        return best;
+    }
+
+    /**
+     * Find the best swap of workers assigned to a pair of jobs, where the first
+     * job is from the given range.
+     * @param feasible Determines if the neighbour found should be feasible or not.
+     * @param best The best move found so far, replaced by a better job swap.
+     * @param from First job of the range.
+     * @param to Job after the last one of the range.
+     */
+    private void findBestTwoJobSwap(boolean feasible, Move best, int from, int to) {
+        int over = totalOverTime;
+        /** Both workers of the pair are looked up in the rows of the two jobs,
+         * use the job-major layout. */
+        int[] costs = settings.getJobMajorCosts();
+        int[] times = settings.getJobMajorTimes();
+        for (int i = from; i < to; i++) {
+            int old_worker1 = getWorker(i);
+            if (old_worker1 == -1) {
+                continue;
+            }
+            int row1 = i * workersCount;
+            int time1 = workerTotalTime[old_worker1] - times[row1 + old_worker1];
+            int cost1 = globalCost - costs[row1 + old_worker1];
+            int over1 = over - overdue(old_worker1, workerTotalTime[old_worker1]);
             for (int j = i + 1; j < jobsCount; j++) {
-                GapSolution neighSolution = new GapSolution(this, getSettings());
-                int old_worker1 = getWorker(i);
                 int old_worker2 = getWorker(j);
-                if (old_worker1 == old_worker2) {
+                if (old_worker2 == old_worker1 || old_worker2 == -1) {
                     continue;
                 }
-                neighSolution.unassign(i);
-                neighSolution.assign(i, old_worker2, true);
-                neighSolution.unassign(j);
-                neighSolution.assign(j, old_worker1, true);
-                double cost = neighSolution.getPenalty();
-                if ((cost < bestCost) && (!feasible || neighSolution.isFeasible())) {
-                    bestSolution = new GapSolution(neighSolution, getSettings());
-                    bestCost = cost;
+                int row2 = j * workersCount;
+                int new_time1 = time1 + times[row2 + old_worker1];
+                int new_time2 = workerTotalTime[old_worker2] - times[row2 + old_worker2]
+                        + times[row1 + old_worker2];
+                int new_over = over1 - overdue(old_worker2, workerTotalTime[old_worker2])
+                        + overdue(old_worker1, new_time1) + overdue(old_worker2, new_time2);
+                int cost = cost1 - costs[row2 + old_worker2]
+                        + costs[row2 + old_worker1] + costs[row1 + old_worker2];
+                double neighCost = penalty(cost, new_over);
+                if ((neighCost < best.getPenalty()) && (!feasible || new_over == 0)) {
+                    best.setJobSwap(i, j, neighCost);
                 }
             }
         }
-        return bestSolution;
+    }
+
+    /**
+     * Evaluate the job move and two-job swap steps in parallel. Each range of
+     * jobs is scanned into its own move and the moves are reduced in the order
+     * of the ranges, so the result equals the sequential evaluation.
+     * @param feasible Determines if the neighbour found should be feasible or not.
+     * @return The best move found, or an empty move if there is no neighbour
+     *  better than the solution.
+     */
+    private Move getBestMoveParallel(final boolean feasible, SolverMetrics metrics) {
+        long start = (metrics != null) ? System.nanoTime() : 0;
+        final double penalty = getPenalty();
+        int ranges = Math.max(Math.min(jobsCount, ForkJoinPool.getCommonPoolParallelism() * RANGES_PER_THREAD), 1);
+        /** Job moves have the same work for each job, the ranges have equal size. */
+        final int[] moveBounds = new int[ranges + 1];
+        for (int r = 0; r <= ranges; r++) {
+            moveBounds[r] = (int) ((long) r * jobsCount / ranges);
+        }
+        Move move = IntStream.range(0, ranges).parallel().mapToObj(r -> {
+            Move m = new Move(penalty);
+            findBestJobMove(feasible, m, moveBounds[r], moveBounds[r + 1]);
+            return m;
+        }).reduce(new Move(penalty), Move::better);
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.recordNeighbourhood(Move.JOB_MOVE, (long) jobsCount * (workersCount - 1), now - start);
+            start = now;
+        }
+        /** Job i is paired with jobsCount - i - 1 jobs, the ranges have equal
+         * number of pairs. */
+        final int[] swapBounds = new int[ranges + 1];
+        long pairs = (long) jobsCount * (jobsCount - 1) / 2;
+        long sum = 0;
+        int r = 1;
+        for (int i = 0; i < jobsCount && r < ranges; i++) {
+            sum += jobsCount - i - 1;
+            while (r < ranges && sum >= pairs * r / ranges) {
+                swapBounds[r++] = i + 1;
+            }
+        }
+        while (r <= ranges) {
+            swapBounds[r++] = jobsCount;
+        }
+        Move swap = IntStream.range(0, ranges).parallel().mapToObj(k -> {
+            Move m = new Move(penalty);
+            findBestTwoJobSwap(feasible, m, swapBounds[k], swapBounds[k + 1]);
+            return m;
+        }).reduce(new Move(penalty), Move::better);
+        if (metrics != null) {
+            metrics.recordNeighbourhood(Move.JOB_SWAP, pairs, System.nanoTime() - start);
+        }
+        /** A swap is preferred only if it is strictly better, as in the sequential
+         * evaluation. */
+        return Move.better(move, swap);
     }
 
     /**
@@ -503,20 +880,47 @@ public class GapSolution {
      * @return The best neighbour found.
      */
     public GapSolution getBestAllJobsSwapNeihgbour(boolean feasible) {
-        double bestCost = getPenalty();
         GapSolution bestSolution = new GapSolution(this, getSettings());
+        Move best = new Move(getPenalty());
+        findBestAllJobsSwap(feasible, best);
+        best.apply(bestSolution);
+        return bestSolution;
+    }
+
+    /**
+     * Find the best swap of all jobs between a pair of workers. The new times of
+     * the pair are summed over the job lists of the two workers, so all pairs
+     * are evaluated in O(workersCount * jobsCount). The solution is not modified.
+     * @param feasible Determines if the neighbour found should be feasible or not.
+     * @param best The best move found so far, replaced by a better worker swap.
+     */
+    private void findBestAllJobsSwap(boolean feasible, Move best) {
+        int over = totalOverTime;
+        int[] costTimes = settings.getJobMajorCostTimes();
         for (int i = 0; i < workersCount; i++) {
             for (int j = i + 1; j < workersCount; j++) {
-                GapSolution neighSolution = new GapSolution(this, getSettings());
-                neighSolution.swapWorkers(i, j);
-                double cost = neighSolution.getPenalty();
-                if ((cost < bestCost) && (!feasible || neighSolution.isFeasible())) {
-                    bestSolution = new GapSolution(neighSolution, getSettings());
-                    bestCost = cost;
+                int time1 = 0;
+                int time2 = 0;
+                int cost = globalCost;
+                /** Jobs of worker i go to worker j and vice versa. */
+                for (int k = firstJob[i]; k != -1; k = nextJob[k]) {
+                    int index = 2 * (k * workersCount);
+                    cost += costTimes[index + 2 * j] - costTimes[index + 2 * i];
+                    time2 += costTimes[index + 2 * j + 1];
+                }
+                for (int k = firstJob[j]; k != -1; k = nextJob[k]) {
+                    int index = 2 * (k * workersCount);
+                    cost += costTimes[index + 2 * i] - costTimes[index + 2 * j];
+                    time1 += costTimes[index + 2 * i + 1];
+                }
+                int new_over = over - overdue(i, workerTotalTime[i]) - overdue(j, workerTotalTime[j])
+                        + overdue(i, time1) + overdue(j, time2);
+                double neighCost = penalty(cost, new_over);
+                if ((neighCost < best.getPenalty()) && (!feasible || new_over == 0)) {
+                    best.setWorkerSwap(i, j, neighCost);
                 }
             }
         }
-        return bestSolution;
     }
 
     /**
@@ -527,8 +931,16 @@ public class GapSolution {
      * @return True if the perturbed solution is feasible, false otherwise.
      */
     public boolean perturb() {
+        return perturb(new SplittableRandom());
+    }
+
+    /**
+     * Perturb a solution, see perturb().
+     * @param generator Random generator used to choose the perturbation method.
+     * @return True if the perturbed solution is feasible, false otherwise.
+     */
+    public boolean perturb(SplittableRandom generator) {
         int perturbOptions = 2;
-        Random generator = new Random();
         int perturbId = generator.nextInt(perturbOptions);
         switch (perturbId) {
             case 0:
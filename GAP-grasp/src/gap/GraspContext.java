@@ -0,0 +1,200 @@
+package gap;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * State of a GRASP search shared by all threads solving the same problem. The
+ * threads take iterations from a common budget and publish their solutions to
+ * a common incumbent, so that adding threads splits the work instead of
+ * repeating it. The search is stopped as soon as the incumbent reaches the
+ * lower bound of the cost.
+ *
+ * Each iteration gets its own random generator split from the generator of the
+ * context in the order of the iterations, so the randomness of an iteration
+ * depends only on the seed and the iteration number, not on the thread.
+ */
+public class GraspContext {
+
+    private static final Logger logger = Logger.getLogger(GraspContext.class.getName());
+
+    /** Total number of iterations of all threads */
+    private int iterations;
+    /** Number of iterations already taken by the threads, guarded by random */
+    private int startedIterations = 0;
+    /** Generator the generators of the iterations are split from */
+    private final SplittableRandom random;
+    /** Number of iterations in which no feasible solution was generated */
+    private AtomicInteger failedIterations = new AtomicInteger(0);
+    /** The best solution found so far, null if there is none */
+    private AtomicReference<GapSolution> incumbent = new AtomicReference<GapSolution>();
+    /** Cost which can not be improved */
+    private int lowerBound;
+    private volatile boolean stopped;
+    /** System.nanoTime() of the start of the search */
+    private final long startNanos;
+    /** System.nanoTime() after which no more iterations are started */
+    private long deadline;
+    private boolean hasDeadline;
+    /** Trace of the improvements of the incumbent, null if not traced */
+    private ConvergenceTrace trace;
+
+    public GraspContext(int _iterations, int _lowerBound) {
+        this(_iterations, _lowerBound, new SplittableRandom());
+    }
+
+    /**
+     * Create the context with a given random generator, a seeded generator makes
+     * the iterations reproducible.
+     */
+    public GraspContext(int _iterations, int _lowerBound, SplittableRandom _random) {
+        startNanos = System.nanoTime();
+        random = _random;
+        iterations = _iterations;
+        lowerBound = _lowerBound;
+        stopped = false;
+        hasDeadline = false;
+    }
+
+    /**
+     * Limit the time of the search, no iterations are started after the limit.
+     * @param millis Time limit in milliseconds from now.
+     */
+    public void setTimeLimit(long millis) {
+        deadline = System.nanoTime() + millis * 1000000L;
+        hasDeadline = true;
+    }
+
+    /**
+     * Record the improvements of the incumbent to the trace.
+     * @param _trace The trace, null to stop tracing.
+     */
+    public void setTrace(ConvergenceTrace _trace) {
+        trace = _trace;
+    }
+
+    /**
+     * Number of iterations started by all threads so far.
+     */
+    public int getStartedIterations() {
+        synchronized (random) {
+            return startedIterations;
+        }
+    }
+
+    /**
+     * Time elapsed from the creation of the context in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Determines whether the time limit of the search has passed.
+     */
+    public boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline > 0;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Take one iteration from the budget.
+     * @return True if the thread should perform another iteration, false if the
+     *  budget is exhausted or the search was stopped.
+     */
+    public boolean nextIteration() {
+        return nextIterationRandom() != null;
+    }
+
+    /**
+     * Take one iteration from the budget together with its random generator.
+     * @return Random generator of the iteration, null if the budget is exhausted
+     *  or the search was stopped.
+     */
+    public SplittableRandom nextIterationRandom() {
+        if (isFinished()) {
+            return null;
+        }
+        synchronized (random) {
+            if (startedIterations >= iterations) {
+                return null;
+            }
+            startedIterations++;
+            return random.split();
+        }
+    }
+
+    /**
+     * Record an iteration which failed to generate a feasible solution.
+     * @return Number of failed iterations of all threads.
+     */
+    public int addFailedIteration() {
+        return failedIterations.incrementAndGet();
+    }
+
+    /**
+     * Offer a solution to the incumbent. The solution is copied only if it is
+     * better than the incumbent, so the caller may keep reusing it.
+     * @param gs Feasible solution.
+     * @return True if the solution became the new incumbent, false otherwise.
+     */
+    public boolean offer(GapSolution gs) {
+        GapSolution copy = null;
+        while (true) {
+            GapSolution best = incumbent.get();
+            if (best != null && best.getGlobalCost() <= gs.getGlobalCost()) {
+                return false;
+            }
+            if (copy == null) {
+                copy = new GapSolution(gs, gs.getSettings());
+            }
+            if (incumbent.compareAndSet(best, copy)) {
+                if (trace != null) {
+                    trace.record(getElapsedNanos(), getStartedIterations(), copy);
+                }
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("GRASP: Best cost " + copy.getGlobalCost() + " after " + getStartedIterations() + " iterations");
+                    final GapSolution improved = copy;
+                    logger.log(Level.FINEST, () -> improved.toString());
+                }
+                if (copy.getGlobalCost() <= lowerBound) {
+                    stop();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The best solution found so far, null if there is none.
+     */
+    public GapSolution getIncumbent() {
+        return incumbent.get();
+    }
+
+    /**
+     * Stop all threads after their current iteration.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Determines whether the search was stopped or its time limit has passed.
+     * Checked by the solution generator and the local search, so that a search
+     * with time limit ends soon after the limit.
+     */
+    public boolean isFinished() {
+        return stopped || isExpired();
+    }
+}
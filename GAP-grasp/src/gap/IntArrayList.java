@@ -0,0 +1,74 @@
+package gap;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints. It is not synchronized and it is meant to be
+ * reused as a scratch buffer by one solver thread, clear() keeps the allocated array.
+ */
+public class IntArrayList {
+
+    private int[] values;
+    private int size;
+
+    public IntArrayList() {
+        this(16);
+    }
+
+    public IntArrayList(int capacity) {
+        values = new int[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int pos) {
+        if (pos >= size) {
+            throw new IndexOutOfBoundsException("Position " + pos + " of " + size);
+        }
+        return values[pos];
+    }
+
+    public void set(int pos, int value) {
+        if (pos >= size) {
+            throw new IndexOutOfBoundsException("Position " + pos + " of " + size);
+        }
+        values[pos] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all values, the capacity is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
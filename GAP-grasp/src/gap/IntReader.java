@@ -0,0 +1,221 @@
+package gap;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reader of whitespace separated ASCII integers. The input is read through a
+ * byte buffer and the integers are parsed directly from the bytes, so no
+ * strings are created and line breaks are treated as any other whitespace.
+ * The buffer is either refilled from a channel or it holds the whole input,
+ * e.g., a memory mapped file.
+ */
+public class IntReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    /** Number of bytes consumed before the current buffer content */
+    private long offset;
+
+    /**
+     * Create a reader of the channel, the channel is closed by close().
+     */
+    public IntReader(ReadableByteChannel _channel) {
+        channel = _channel;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        offset = 0;
+    }
+
+    /**
+     * Create a reader of the whole input held in the buffer, e.g., a memory
+     * mapped file. The reader starts at the current position of the buffer.
+     */
+    public IntReader(ByteBuffer _buffer) {
+        channel = null;
+        buffer = _buffer;
+        offset = 0;
+    }
+
+    /**
+     * Refill the buffer from the channel.
+     * @return False if the end of input was reached, true otherwise.
+     */
+    private boolean fill() throws IOException {
+        if (channel == null) {
+            return false;
+        }
+        offset += buffer.limit();
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * Skip whitespace.
+     * @return False if the end of input was reached, true otherwise.
+     */
+    private boolean skipWhitespace() throws IOException {
+        while (true) {
+            while (buffer.hasRemaining()) {
+                if (buffer.get(buffer.position()) > ' ') {
+                    return true;
+                }
+                buffer.get();
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Determines whether there is another integer in the input.
+     */
+    public boolean hasNext() throws IOException {
+        return skipWhitespace();
+    }
+
+    /**
+     * Position of the next unread byte in the input.
+     */
+    public long position() {
+        return offset + buffer.position();
+    }
+
+    /**
+     * Read the next integer.
+     * @throws EOFException If the end of input was reached.
+     * @throws IOException If the next token is not an integer.
+     */
+    public int nextInt() throws IOException {
+        if (!skipWhitespace()) {
+            throw new EOFException("Parser: Unexpected end of file");
+        }
+        boolean negative = false;
+        byte c = buffer.get();
+        if (c == '-') {
+            negative = true;
+            if (!buffer.hasRemaining() && !fill()) {
+                throw new EOFException("Parser: Unexpected end of file");
+            }
+            c = buffer.get();
+        }
+        if (c < '0' || c > '9') {
+            throw new IOException("Parser: Unexpected character '" + (char) c + "' at " + (position() - 1));
+        }
+        int value = c - '0';
+        while (buffer.hasRemaining() || fill()) {
+            c = buffer.get(buffer.position());
+            if (c < '0' || c > '9') {
+                if (c > ' ') {
+                    throw new IOException("Parser: Unexpected character '" + (char) c + "' at " + position());
+                }
+                break;
+            }
+            buffer.get();
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Check that the rest of the current line is empty and move to the next line.
+     * Used to check that a row of values ends together with a line.
+     * @param what Description of the row used in the error message.
+     * @throws IOException If there is another value on the line.
+     */
+    public void expectLineEnd(String what) throws IOException {
+        if (!skipLineEnd()) {
+            throw new IOException("Parser: " + what + " does not end with the line at " + position());
+        }
+    }
+
+    /**
+     * Check the end of a row of a matrix, see expectLineEnd(String). The error
+     * message is only formatted when the check fails, so no strings are
+     * created for the rows of valid problems.
+     * @param matrix Name of the matrix used in the error message.
+     * @param row Number of the row starting from 1, 0 if the matrix has one row.
+     * @param elements Number of the elements of the row.
+     * @throws IOException If there is another value on the line.
+     */
+    public void expectLineEnd(String matrix, int row, int elements) throws IOException {
+        if (!skipLineEnd()) {
+            throw new IOException("Parser: Row " + ((row > 0) ? row + " " : "") + "of " + matrix
+                    + " (" + elements + " elements) does not end with the line at " + position());
+        }
+    }
+
+    /**
+     * Skip the rest of the current line if it is empty.
+     * @return True if the reader moved to the next line or to the end of input,
+     *  false if there is another value on the line, the reader stops before it.
+     */
+    private boolean skipLineEnd() throws IOException {
+        while (buffer.hasRemaining() || fill()) {
+            byte c = buffer.get(buffer.position());
+            if (c == '\n') {
+                buffer.get();
+                return true;
+            }
+            if (c > ' ') {
+                return false;
+            }
+            buffer.get();
+        }
+        return true;
+    }
+
+    /**
+     * Skip the rest of the current line.
+     * @return Number of integers skipped, -1 if the end of input was reached before.
+     */
+    public int skipLine() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        int tokens = 0;
+        boolean inToken = false;
+        while (buffer.hasRemaining() || fill()) {
+            byte c = buffer.get();
+            if (c == '\n') {
+                break;
+            }
+            if (c > ' ') {
+                if (!inToken) {
+                    tokens++;
+                }
+                inToken = true;
+            } else {
+                inToken = false;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Move to the given position of the input, only supported for the readers
+     * of a buffer holding the whole input.
+     */
+    public void seek(long position) throws IOException {
+        if (channel != null) {
+            throw new IOException("Parser: Seek is not supported on a stream");
+        }
+        buffer.position((int) position);
+    }
+
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package gap;
+
+/**
+ * Domains of feasible assignments of workers to jobs. The domain of each job
+ * is stored as a bitset over worker ids, all of them are kept in a single flat
+ * array, so that membership test, removal and cardinality are constant time
+ * operations and no boxing is needed.
+ *
+ * Removals done by remove(job, worker, true) and propagate() are recorded on
+ * a trail, so that a backtracking search can restore the domains to an earlier
+ * mark without recomputing them.
+ */
+public class JobDomains {
+
+    /** Number of jobs */
+    private int jobsCount;
+    /** Number of workers */
+    private int workersCount;
+    /** Number of long words used for domain of one job */
+    private int words;
+    /** Bitsets of all jobs, job i occupies words [i*words, (i+1)*words) */
+    private long[] bits;
+    /** Number of workers in domain of each job */
+    private int[] sizes;
+    /** Jobs and workers removed from the domains, in order of removal */
+    private int[] trailJobs;
+    private int[] trailWorkers;
+    private int trailSize;
+
+    public JobDomains(int _jobsCount, int _workersCount) {
+        jobsCount = _jobsCount;
+        workersCount = _workersCount;
+        words = Math.max((workersCount + 63) >>> 6, 1);
+        bits = new long[jobsCount * words];
+        sizes = new int[jobsCount];
+        trailJobs = new int[Math.max(jobsCount, 16)];
+        trailWorkers = new int[trailJobs.length];
+        trailSize = 0;
+    }
+
+    /**
+     * Reset the domains to contain all workers for all jobs.
+     */
+    public void fill() {
+        for (int i = 0; i < jobsCount; i++) {
+            fill(i);
+        }
+    }
+
+    /**
+     * Reset the domain of the job to contain all workers.
+     */
+    public void fill(int job) {
+        int offset = job * words;
+        for (int k = 0; k < words - 1; k++) {
+            bits[offset + k] = -1L;
+        }
+        int rest = workersCount - ((words - 1) << 6);
+        bits[offset + words - 1] = (rest == 64) ? -1L : (1L << rest) - 1;
+        sizes[job] = workersCount;
+    }
+
+    /**
+     * Remove all workers from the domain of the job.
+     */
+    public void clear(int job) {
+        int offset = job * words;
+        for (int k = 0; k < words; k++) {
+            bits[offset + k] = 0;
+        }
+        sizes[job] = 0;
+    }
+
+    public boolean contains(int job, int worker) {
+        return (bits[job * words + (worker >>> 6)] & (1L << worker)) != 0;
+    }
+
+    public void add(int job, int worker) {
+        int index = job * words + (worker >>> 6);
+        long mask = 1L << worker;
+        if ((bits[index] & mask) == 0) {
+            bits[index] |= mask;
+            sizes[job]++;
+        }
+    }
+
+    /**
+     * Remove the worker from the domain of the job.
+     * @return True if the worker was in the domain, false otherwise.
+     */
+    public boolean remove(int job, int worker) {
+        int index = job * words + (worker >>> 6);
+        long mask = 1L << worker;
+        if ((bits[index] & mask) == 0) {
+            return false;
+        }
+        bits[index] &= ~mask;
+        sizes[job]--;
+        return true;
+    }
+
+    /**
+     * Remove the worker from the domain of the job.
+     * @param trail True if the removal should be recorded on the trail.
+     * @return True if the worker was in the domain, false otherwise.
+     */
+    public boolean remove(int job, int worker, boolean trail) {
+        if (!remove(job, worker)) {
+            return false;
+        }
+        if (trail) {
+            push(job, worker);
+        }
+        return true;
+    }
+
+    /**
+     * Forward checking after the assignment of a job to the worker. Only the
+     * worker's remaining time has changed, hence only the worker can become
+     * infeasible for the unassigned jobs. Removed values are recorded on the trail.
+     * @param gs Solution after the assignment.
+     * @param worker Id of the worker.
+     */
+    public void propagate(GapSolution gs, int worker) {
+        int index = worker >>> 6;
+        long mask = 1L << worker;
+        for (int i = 0; i < jobsCount; i++) {
+            if ((bits[i * words + index] & mask) == 0 || gs.isAssigned(i)
+                    || gs.canFeasiblyAssign(i, worker)) {
+                continue;
+            }
+            bits[i * words + index] &= ~mask;
+            sizes[i]--;
+            push(i, worker);
+        }
+    }
+
+    private void push(int job, int worker) {
+        if (trailSize == trailJobs.length) {
+            int[] tmp = new int[trailSize * 2];
+            System.arraycopy(trailJobs, 0, tmp, 0, trailSize);
+            trailJobs = tmp;
+            tmp = new int[trailSize * 2];
+            System.arraycopy(trailWorkers, 0, tmp, 0, trailSize);
+            trailWorkers = tmp;
+        }
+        trailJobs[trailSize] = job;
+        trailWorkers[trailSize] = worker;
+        trailSize++;
+    }
+
+    /**
+     * Current position on the trail, domains can be later restored to it by undo().
+     */
+    public int mark() {
+        return trailSize;
+    }
+
+    /**
+     * Restore all the values removed from the domains since the mark.
+     */
+    public void undo(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            add(trailJobs[trailSize], trailWorkers[trailSize]);
+        }
+    }
+
+    /**
+     * Forget all the recorded removals.
+     */
+    public void clearTrail() {
+        trailSize = 0;
+    }
+
+    public int size(int job) {
+        return sizes[job];
+    }
+
+    public boolean isEmpty(int job) {
+        return sizes[job] == 0;
+    }
+
+    /**
+     * Find the worker at the given position of the domain, workers are ordered
+     * by their ids.
+     * @param job Id of the job.
+     * @param pos Position in the domain, 0 <= pos < size(job).
+     * @return Id of the worker.
+     */
+    public int get(int job, int pos) {
+        int offset = job * words;
+        for (int k = 0; k < words; k++) {
+            long word = bits[offset + k];
+            int count = Long.bitCount(word);
+            if (pos < count) {
+                for (int i = 0; i < pos; i++) {
+                    word &= word - 1; // drop the lowest worker
+                }
+                return (k << 6) + Long.numberOfTrailingZeros(word);
+            }
+            pos -= count;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first worker in the domain of the job with id at least the given one.
+     * Domain can be iterated as:
+     * for (int w = next(job, 0); w != -1; w = next(job, w + 1))
+     * @return Id of the worker or -1 if there is not any.
+     */
+    public int next(int job, int worker) {
+        if (worker >= workersCount) {
+            return -1;
+        }
+        int offset = job * words;
+        int k = worker >>> 6;
+        long word = bits[offset + k] & (-1L << worker);
+        while (true) {
+            if (word != 0) {
+                return (k << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++k == words) {
+                return -1;
+            }
+            word = bits[offset + k];
+        }
+    }
+
+    /**
+     * Set the domain of the job to the workers to which the job can be feasibly
+     * assigned in the given solution.
+     */
+    public void restrict(int job, GapSolution gs) {
+        int offset = job * words;
+        int size = 0;
+        for (int k = 0; k < words; k++) {
+            long word = 0;
+            int last = Math.min(workersCount, (k + 1) << 6);
+            for (int j = k << 6; j < last; j++) {
+                if (gs.canFeasiblyAssign(job, j)) {
+                    word |= 1L << j;
+                    size++;
+                }
+            }
+            bits[offset + k] = word;
+        }
+        sizes[job] = size;
+    }
+}
@@ -0,0 +1,237 @@
+package gap;
+
+import java.util.Arrays;
+
+/**
+ * Immutable index of the problem values used by the solution generators. For
+ * each job, the workers are kept sorted by time, by cost and by cost times time,
+ * together with tables of minimum and maximum values and orderings of the jobs.
+ * The index is created once per problem by GapSettings.getJobIndex() and shared
+ * by all generators and threads.
+ *
+ * Worker orderings are stored in job-major arrays, the workers of job j are at
+ * j * workersCount to (j + 1) * workersCount - 1. Workers with equal values are
+ * ordered by their id. The returned arrays must not be modified.
+ */
+public class JobIndex {
+
+    private final int workersCount;
+    private final int jobsCount;
+    /** Workers of each job sorted by time, cost and cost * time in ascending order. */
+    private final int[] workersByTime;
+    private final int[] workersByCost;
+    private final int[] workersByCostTime;
+    /** Minimum and maximum time of each job over all workers. */
+    private final int[] minTime;
+    private final int[] maxTime;
+    /** Minimum cost of each job over all workers. */
+    private final int[] minCost;
+    /** Minimum cost * time of each job over all workers. */
+    private final int[] minCostTime;
+    /** Jobs sorted by the difference between maximum and minimum time in ascending order. */
+    private final int[] jobsByTimeDelta;
+    /** Jobs sorted by minimum time and then by maximum time in descending order. */
+    private final int[] jobsByMinTimeDesc;
+    /** Jobs sorted by minimum cost * time in ascending order, created on the
+     * first access as only the greedy generator uses it. */
+    private volatile int[] jobsByMinCostTime;
+    /** Sum of the minimum costs of all jobs. */
+    private final int costLowerBound;
+
+    public JobIndex(GapSettings settings) {
+        workersCount = settings.getWorkersCount();
+        jobsCount = settings.getJobsCount();
+        int[] costTimes = settings.getJobMajorCostTimes();
+        int[] costs = new int[workersCount];
+        int[] times = new int[workersCount];
+        int[] products = new int[workersCount];
+        long[] keys = new long[workersCount];
+        workersByTime = new int[jobsCount * workersCount];
+        workersByCost = new int[jobsCount * workersCount];
+        workersByCostTime = new int[jobsCount * workersCount];
+        minTime = new int[jobsCount];
+        maxTime = new int[jobsCount];
+        minCost = new int[jobsCount];
+        minCostTime = new int[jobsCount];
+        int lowerBound = 0;
+        for (int job = 0; job < jobsCount; job++) {
+            int row = job * workersCount;
+            minTime[job] = Integer.MAX_VALUE;
+            maxTime[job] = Integer.MIN_VALUE;
+            minCost[job] = Integer.MAX_VALUE;
+            for (int worker = 0; worker < workersCount; worker++) {
+                costs[worker] = costTimes[2 * (row + worker)];
+                times[worker] = costTimes[2 * (row + worker) + 1];
+                products[worker] = costs[worker] * times[worker];
+                minTime[job] = Math.min(minTime[job], times[worker]);
+                maxTime[job] = Math.max(maxTime[job], times[worker]);
+                minCost[job] = Math.min(minCost[job], costs[worker]);
+            }
+            sort(times, keys, workersByTime, row);
+            sort(costs, keys, workersByCost, row);
+            sort(products, keys, workersByCostTime, row);
+            minCostTime[job] = (workersCount == 0) ? 0 : products[workersByCostTime[row]];
+            lowerBound += minCost[job];
+        }
+        costLowerBound = lowerBound;
+
+        int[] deltas = new int[jobsCount];
+        for (int job = 0; job < jobsCount; job++) {
+            deltas[job] = getTimeDelta(job);
+        }
+        long[] jobKeys = new long[jobsCount];
+        jobsByTimeDelta = new int[jobsCount];
+        sort(deltas, jobKeys, jobsByTimeDelta, 0);
+
+        // minTime and then maxTime descending: two stable passes, the second
+        // key first, ~value reverses the order without overflow
+        int[] byMaxTime = new int[jobsCount];
+        int[] values = new int[jobsCount];
+        for (int job = 0; job < jobsCount; job++) {
+            values[job] = ~maxTime[job];
+        }
+        sort(values, jobKeys, byMaxTime, 0);
+        for (int i = 0; i < jobsCount; i++) {
+            values[i] = ~minTime[byMaxTime[i]];
+        }
+        int[] positions = new int[jobsCount];
+        sort(values, jobKeys, positions, 0);
+        jobsByMinTimeDesc = new int[jobsCount];
+        for (int i = 0; i < jobsCount; i++) {
+            jobsByMinTimeDesc[i] = byMaxTime[positions[i]];
+        }
+    }
+
+    /**
+     * Stable sort of the indices by the values in ascending order. Each value is
+     * packed with its index into a long, so that equal values are ordered by the index.
+     * @param values Values to sort by.
+     * @param keys Scratch array of the same length as values.
+     * @param target Array to store the sorted indices to.
+     * @param offset Position of the first index in the target array.
+     */
+    private static void sort(int[] values, long[] keys, int[] target, int offset) {
+        for (int i = 0; i < values.length; i++) {
+            keys[i] = ((long) values[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < values.length; i++) {
+            target[offset + i] = (int) keys[i];
+        }
+    }
+
+    public int getWorkersCount() {
+        return workersCount;
+    }
+
+    public int getJobsCount() {
+        return jobsCount;
+    }
+
+    /**
+     * Workers of all jobs sorted by time, job-major.
+     */
+    public int[] getWorkersByTime() {
+        return workersByTime;
+    }
+
+    /**
+     * Workers of all jobs sorted by cost, job-major.
+     */
+    public int[] getWorkersByCost() {
+        return workersByCost;
+    }
+
+    /**
+     * Workers of all jobs sorted by cost * time, job-major.
+     */
+    public int[] getWorkersByCostTime() {
+        return workersByCostTime;
+    }
+
+    public int getMinTime(int job) {
+        return minTime[job];
+    }
+
+    public int getMaxTime(int job) {
+        return maxTime[job];
+    }
+
+    /**
+     * Difference between the maximum and minimum time of the job.
+     */
+    public int getTimeDelta(int job) {
+        return maxTime[job] - minTime[job];
+    }
+
+    /**
+     * The worker with the shortest time for the job, the one with the lowest id
+     * if there are more of them.
+     */
+    public int getBestTimeWorker(int job) {
+        return workersByTime[job * workersCount];
+    }
+
+    public int getMinCost(int job) {
+        return minCost[job];
+    }
+
+    public int getMinCostTime(int job) {
+        return minCostTime[job];
+    }
+
+    public int[] getJobsByTimeDelta() {
+        return jobsByTimeDelta;
+    }
+
+    public int[] getJobsByMinTimeDesc() {
+        return jobsByMinTimeDesc;
+    }
+
+    public int[] getJobsByMinCostTime() {
+        int[] jobs = jobsByMinCostTime;
+        if (jobs == null) {
+            synchronized (this) {
+                jobs = jobsByMinCostTime;
+                if (jobs == null) {
+                    jobs = sortByMinCostTime();
+                    jobsByMinCostTime = jobs;
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * The greedy generator has always used this exchange sort, which is not
+     * stable, keep it so that the order of the jobs with equal values stays
+     * the same. It takes O(jobsCount^2) steps, so it is only run on demand.
+     */
+    private int[] sortByMinCostTime() {
+        int[] jobs = new int[jobsCount];
+        int[] values = minCostTime.clone();
+        for (int i = 0; i < jobsCount; i++) {
+            jobs[i] = i;
+        }
+        for (int i = 0; i < jobsCount - 1; i++) {
+            for (int j = i + 1; j < jobsCount; j++) {
+                if (values[i] > values[j]) {
+                    int tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    tmp = jobs[i];
+                    jobs[i] = jobs[j];
+                    jobs[j] = tmp;
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Lower bound of the cost, sum of the cheapest assignments of all jobs.
+     */
+    public int getCostLowerBound() {
+        return costLowerBound;
+    }
+}
@@ -9,13 +9,23 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Main {
 
     private static GapProblem myProblem;
+    /** Time limit of the search in milliseconds, no limit if not positive */
+    private static long timeLimit = 0;
+    /** Seed of the random generators, the runs are not reproducible if not set */
+    private static Long seed = null;
 
     /**
      * @param args the command line arguments
@@ -31,9 +41,19 @@ public class Main {
         boolean local_search = false;
         boolean GRASP = false;
         boolean paralel = false;
+        boolean paralelNeighbourhood = false;
         boolean generateOutput = false;
+        boolean mapped = false;
         int numThreads = 1;
         String outputPrefix ="";
+        String convertFile = "";
+        String generateSpec = "";
+        List<File> files = new ArrayList<File>();
+        String batchOutput = "";
+        int instances = Runtime.getRuntime().availableProcessors();
+        String metricsFile = "";
+        String traceFile = "";
+        Level logLevel = Level.INFO;
 
         // USAGE: java -jar GAP-grasp.jar -f ./data/gap1.txt -n 1 --greedy --local
         // get problem 1 from file in ./data/gap1.txt, show greedy solution and do the local search
@@ -45,11 +65,18 @@ public class Main {
             if (args[i].equals("-f") || args[i].equals("--file")) { // -f file_name.txt
 
                 file_name = args[i + 1];
+                files.add(new File(file_name));
                 i++;
                 System.out.println("Taking file " + file_name);
                 continue;
             }
 
+            if (args[i].equals("-m") || args[i].equals("--mmap")) { // memory mapped input file
+
+                mapped = true;
+                System.out.println("Memory mapping the input file");
+                continue;
+            }
             if (args[i].equals("-n") || args[i].equals("--number")) { // position in file
 
                 position = Integer.parseInt(args[i + 1]);
@@ -96,6 +123,12 @@ public class Main {
                 }
                 continue;
             }
+            if (args[i].equals("-N") || args[i].equals("--paralel-neighbourhood")) { // evaluate neighbourhoods in parallel
+
+                paralelNeighbourhood = true;
+                System.out.println("Parallel neighbourhood evaluation required");
+                continue;
+            }
             if (args[i].equals("-t") || args[i].equals("--threads")) { // -t numthreads
 
                 numThreads = Integer.parseInt(args[i + 1]);
@@ -103,6 +136,62 @@ public class Main {
                 System.out.println("Number of threads " + numThreads);
                 continue;
             }
+            if (args[i].equals("-d") || args[i].equals("--deadline")) { // -d milliseconds
+
+                timeLimit = Long.parseLong(args[i + 1]);
+                i++;
+                System.out.println("Time limit " + timeLimit + " ms");
+                continue;
+            }
+            if (args[i].equals("-s") || args[i].equals("--seed")) { // -s seed
+
+                seed = Long.parseLong(args[i + 1]);
+                i++;
+                System.out.println("Random seed " + seed);
+                continue;
+            }
+            if (args[i].equals("-c") || args[i].equals("--convert")) { // -c binary_file.bin
+                convertFile = args[i + 1];
+                i++;
+                System.out.println("Converting to binary file " + convertFile);
+                continue;
+            }
+            if (args[i].equals("-e") || args[i].equals("--generate")) { // -e type:workersxjobs[:count]
+                generateSpec = args[i + 1];
+                i++;
+                System.out.println("Generating problems " + generateSpec);
+                continue;
+            }
+            if (args[i].equals("-b") || args[i].equals("--batch")) { // -b results.csv
+                batchOutput = args[i + 1];
+                i++;
+                System.out.println("Solving all problems, results in " + batchOutput);
+                continue;
+            }
+            if (args[i].equals("-i") || args[i].equals("--instances")) { // -i number of problems solved at once
+                instances = Integer.parseInt(args[i + 1]);
+                i++;
+                System.out.println("Number of problems solved at once " + instances);
+                continue;
+            }
+            if (args[i].equals("-M") || args[i].equals("--metrics")) { // -M metrics.json
+                metricsFile = args[i + 1];
+                i++;
+                System.out.println("Writing solver metrics to " + metricsFile);
+                continue;
+            }
+            if (args[i].equals("-T") || args[i].equals("--trace")) { // -T trace.csv
+                traceFile = args[i + 1];
+                i++;
+                System.out.println("Writing convergence trace to " + traceFile);
+                continue;
+            }
+            if (args[i].equals("-v") || args[i].equals("--verbosity")) { // -v level
+                logLevel = Level.parse(args[i + 1].toUpperCase());
+                i++;
+                System.out.println("Solver log level " + logLevel);
+                continue;
+            }
             if (args[i].equals("-o") || args[i].equals("--output")) { // -o outputPrefix
                 generateOutput = true;
                 outputPrefix = args[i + 1];
@@ -117,23 +206,54 @@ public class Main {
             System.out.println("File not specified. Ending.");
             return;
         }
+        SolverLog.configure(logLevel);
+        SolverMetrics.register();
+
+        if (!batchOutput.equals("")) {
+            batch(files, mapped, instances, paralel ? numThreads : 1, new File(batchOutput));
+            if (!metricsFile.equals("")) {
+                writeMetrics(SolverMetrics.getTotal(), new File(metricsFile));
+            }
+            return;
+        }
 
         File file = new File(file_name);
+        if (!generateSpec.equals("")) {
+            generate(generateSpec, file);
+            return;
+        }
         if (!file.exists()) {
             System.out.println("File " + file + " does not exist");
             return;
         }
 
-        GapParser parser = new GapParser(file);
+        GapParser parser = new GapParser(file, mapped);
+
+        if (!convertFile.equals("")) {
+            convert(parser, new File(convertFile));
+            return;
+        }
 
         System.out.println("Reading input for problem " + position);
-        myProblem = parser.parseProblem(position);
+        try {
+            myProblem = parser.parseProblem(position);
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+            myProblem = null;
+        }
         System.out.println("Reading done.");
 
         if (myProblem == null) {
             System.out.println("Problem " + position + " from " + file_name + " cannot be found");
             return;
         }
+        myProblem.setParallelNeighbourhood(paralelNeighbourhood);
+        if (seed != null) {
+            myProblem.setSeed(seed);
+        }
+        if (!traceFile.equals("")) {
+            myProblem.setTrace(new ConvergenceTrace());
+        }
 
 
         if (random_alg) {
@@ -168,16 +288,132 @@ public class Main {
         if(generateOutput){
             generateReport(outputPrefix);
         }
+        if (!metricsFile.equals("")) {
+            writeMetrics(myProblem.getMetrics(), new File(metricsFile));
+        }
+        if (!traceFile.equals("")) {
+            myProblem.getTrace().write(new File(traceFile));
+            System.out.println("Trace of " + myProblem.getTrace().size() + " improvements saved to " + traceFile);
+        }
+
+
+
+    }
+
+    /**
+     * Generate random problems and write them to a file, in the binary format
+     * if the file name ends with .bin, in the text format otherwise.
+     * @param spec Type, size and number of the problems as type:workersxjobs[:count],
+     *  e.g. D:80x1600:5.
+     * @param output Output file.
+     */
+    public static void generate(String spec, File output) throws IOException {
+        String[] parts = spec.split(":");
+        String[] size = (parts.length > 1) ? parts[1].split("x") : new String[0];
+        if (parts.length < 2 || parts.length > 3 || parts[0].length() != 1 || size.length != 2) {
+            System.out.println("Wrong problem specification " + spec + ", use type:workersxjobs[:count]");
+            return;
+        }
+        int count = (parts.length == 3) ? Integer.parseInt(parts[2]) : 1;
+        GapGenerator generator = new GapGenerator(parts[0].charAt(0),
+                (seed != null) ? seed : new SplittableRandom().nextLong());
+        Iterator<GapProblem> problems = generator.generate(count, Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        if (output.getName().endsWith(".bin")) {
+            GapBinary.write(output, problems);
+        } else {
+            GapParser.write(output, count, problems);
+        }
+        System.out.println(count + " problems written to " + output);
+    }
 
+    /**
+     * Solve all problems of the files by GRASP, the results are written to the
+     * output file as they are finished.
+     * @param files Input files.
+     * @param mapped True if the text files should be memory mapped.
+     * @param instances Number of problems solved at once.
+     * @param threads Number of threads of each problem.
+     * @param output Output file, JSON lines if its name ends with .jsonl, CSV otherwise.
+     */
+    public static void batch(List<File> files, boolean mapped, int instances, int threads, File output) throws IOException {
+        BatchSolver solver = new BatchSolver(instances, threads, timeLimit);
+        if (seed != null) {
+            solver.setSeed(seed);
+        }
+        BatchWriter writer = BatchWriter.open(output);
+        long runtime = new Date().getTime();
+        try {
+            int count = solver.solve(files, mapped, writer);
+            runtime = new Date().getTime() - runtime;
+            SolverLog.flush();
+            System.out.println(count + " problems processed in " + runtime + " ms, results written to " + output);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.out.println("Batch interrupted");
+        } finally {
+            writer.close();
+        }
+    }
 
+    /**
+     * Write the metrics of the solver as a JSON object, see SolverMetrics.toJson().
+     */
+    public static void writeMetrics(SolverMetrics metrics, File output) throws IOException {
+        BufferedWriter out = new BufferedWriter(new FileWriter(output));
+        try {
+            out.write(metrics.toJson());
+            out.write("\n");
+        } finally {
+            out.close();
+        }
+        System.out.println("Metrics saved to " + output);
+    }
+
+    /**
+     * Convert all problems readable from the input file to the binary format.
+     * Damaged problems are reported and skipped.
+     */
+    public static void convert(GapParser parser, File output) throws IOException {
+        final GapParser.ProblemIterator problems = parser.iterator();
+        try {
+            int count = GapBinary.write(output, new Iterator<GapProblem>() {
+
+                private GapProblem next = null;
+
+                public boolean hasNext() {
+                    while (next == null && problems.hasNext()) {
+                        try {
+                            next = problems.next();
+                        } catch (UncheckedIOException ex) {
+                            System.out.println(ex.getCause().getMessage() + ", problem skipped");
+                        }
+                    }
+                    return next != null;
+                }
+
+                public GapProblem next() {
+                    hasNext();
+                    GapProblem problem = next;
+                    next = null;
+                    return problem;
+                }
 
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            });
+            System.out.println(count + " problems written to " + output);
+        } finally {
+            problems.close();
+        }
     }
 
     public static void generateParalelGRASPSolution(int numThreads) {
         myProblem.clear();
         long runtime = new Date().getTime();
-        boolean solved = myProblem.generateParalelGRASPSolution(numThreads);
+        boolean solved = myProblem.generateParalelGRASPSolution(numThreads, timeLimit);
         runtime = new Date().getTime() - runtime;
+        SolverLog.flush();
         if (solved) {
             System.out.println(myProblem.toString());
             System.out.println("GRASP solution found in " + runtime + " ms with " + myProblem.getBacktracksCount() + " backtracks");
@@ -189,8 +425,9 @@ public class Main {
     public static void generateGRASPSolution() {
         myProblem.clear();
         long runtime = new Date().getTime();
-        boolean solved = myProblem.generateGRASPSolution();
+        boolean solved = myProblem.generateGRASPSolution(myProblem.getDefaultGRASPIterations(), .5, timeLimit);
         runtime = new Date().getTime() - runtime;
+        SolverLog.flush();
         if (solved) {
             System.out.println(myProblem.toString());
             System.out.println("GRASP solution found in " + runtime + " ms with " + myProblem.getBacktracksCount() + " backtracks");
@@ -205,6 +442,7 @@ public class Main {
         long runtime = new Date().getTime();
         boolean solved = myProblem.generatePeckishSolution();
         runtime = new Date().getTime() - runtime;
+        SolverLog.flush();
         if (solved) {
             System.out.println(myProblem.toString());
             System.out.println("Peckish solution found in " + runtime + " ms with " + myProblem.getBacktracksCount() + " backtracks");
@@ -220,6 +458,7 @@ public class Main {
         long runtime = new Date().getTime();
         boolean solved = myProblem.generateRandomSolution();
         runtime = new Date().getTime() - runtime;
+        SolverLog.flush();
         if (solved) {
             System.out.println(myProblem.toString());
             System.out.println("Random solution found in " + runtime + " ms with " + myProblem.getBacktracksCount() + " backtracks");
@@ -235,6 +474,7 @@ public class Main {
         long runtime = new Date().getTime();
         boolean solved = myProblem.generateGreedySolution();
         runtime = new Date().getTime() - runtime;
+        SolverLog.flush();
         if (solved) {
             System.out.println(myProblem.toString());
             System.out.println("Greedy solution found in " + runtime + " ms with " + myProblem.getBacktracksCount() + " backtracks");
@@ -246,53 +486,24 @@ public class Main {
 
     public static void generateReport(String outputPrefix){
         GapSolution gs = myProblem.getSolution();
-        GapSettings settings = gs.getSettings();
         boolean dirCreated = (new File(outputPrefix)).mkdirs();
         if(! dirCreated){
             System.out.println("The directory " + outputPrefix + " was not created (already exists?).");
         }
 
-        String report = "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\"";
-        report += "\n\"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">";
-        report += "\n<html>";
-        report += "\n<head>";
-        report += "\n<title>GAP results</title>";
-        report += "\n<meta http-equiv=\"Content-Language\" content=\"en\" />";
-        report += "\n<meta http-equiv=\"content-type\" content=\"text/html; charset=utf-8\" />";
-        report += "\n</head>";
-        report += "\n<body>";
-        report += "\n<h1>GAP solution report</h1>";
-        report += "\n<p>Total Cost: <emph>" + gs.getGlobalCost() + "</emph></p>";
-        report += "\n<table>";
-        
-        report += "\n  <tr><td>worker</td><td>jobs</td><td> used time</td></tr>";
-        for (int i=0; i < gs.getWorkersCount(); i++) {
-            report += "\n  <tr><td>" + i + "</td><td>";
-            for (int j=0; j < gs.getJobsCount(); j++) {
-                if (gs.getWorker(j) == i) {
-                    report += j + " ";
-                }
-            }
-            report += "</td><td>" ;
-            report += gs.getWorkerTime(i) + "/" + settings.getLimitTime(i) ;
-            report += "</td></tr>";
-
-        }
-        report += "\n</table>";
-        report += "\n<img src=\"solution.svg\" width=\"800\"/>";
-        report += "\n</body>";
-
-
-
         try {
-            FileWriter fstream = new FileWriter(outputPrefix + "/solution.svg");
-            BufferedWriter out = new BufferedWriter(fstream);
-            out.write(myProblem.getSolution().toSVG());
-            out.close();
-            fstream = new FileWriter(outputPrefix + "/report.html");
-            out = new BufferedWriter(fstream);
-            out.write(report);
-            out.close();
+            BufferedWriter out = new BufferedWriter(new FileWriter(outputPrefix + "/solution.svg"));
+            try {
+                gs.writeSVG(out);
+            } finally {
+                out.close();
+            }
+            out = new BufferedWriter(new FileWriter(outputPrefix + "/report.html"));
+            try {
+                writeReport(gs, out);
+            } finally {
+                out.close();
+            }
         } catch (IOException ex) {
             Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -300,13 +511,60 @@ public class Main {
 
         System.out.println("Output saved.");
     }
+
+    /**
+     * Write the HTML report of the solution, the jobs of all workers are
+     * grouped in one pass over the jobs.
+     * @param gs Solution.
+     * @param out Output, it is not flushed.
+     */
+    public static void writeReport(GapSolution gs, Writer out) throws IOException {
+        GapSettings settings = gs.getSettings();
+        out.write("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\"");
+        out.write("\n\"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">");
+        out.write("\n<html>");
+        out.write("\n<head>");
+        out.write("\n<title>GAP results</title>");
+        out.write("\n<meta http-equiv=\"Content-Language\" content=\"en\" />");
+        out.write("\n<meta http-equiv=\"content-type\" content=\"text/html; charset=utf-8\" />");
+        out.write("\n</head>");
+        out.write("\n<body>");
+        out.write("\n<h1>GAP solution report</h1>");
+        out.write("\n<p>Total Cost: <emph>" + gs.getGlobalCost() + "</emph></p>");
+        out.write("\n<table>");
+
+        out.write("\n  <tr><td>worker</td><td>jobs</td><td> used time</td></tr>");
+        int[] starts = new int[gs.getWorkersCount() + 1];
+        int[] jobs = gs.getJobsByWorker(starts);
+        for (int i=0; i < gs.getWorkersCount(); i++) {
+            out.write("\n  <tr><td>" + i + "</td><td>");
+            for (int k = starts[i]; k < starts[i + 1]; k++) {
+                out.write(jobs[k] + " ");
+            }
+            out.write("</td><td>");
+            out.write(gs.getWorkerTime(i) + "/" + settings.getLimitTime(i));
+            out.write("</td></tr>");
+
+        }
+        out.write("\n</table>");
+        out.write("\n<img src=\"solution.svg\" width=\"800\"/>");
+        out.write("\n</body>");
+    }
     
-        public static void generateTimeGreedySolution() {
+    /**
+     * Time greedy solution, the construction is recorded to the metrics of the problem.
+     * @param limit Time limit in milliseconds, no limit if not positive.
+     * @return True if a feasible solution was found.
+     */
+    public static boolean generateTimeGreedySolution(long limit) {
 
         myProblem.clear();
         long runtime = new Date().getTime();
-        boolean solved = myProblem.generateTimeGreedySolution();
+        long start = System.nanoTime();
+        boolean solved = myProblem.generateTimeGreedySolution(limit);
+        myProblem.getMetrics().recordConstruction(System.nanoTime() - start, !solved);
         runtime = new Date().getTime() - runtime;
+        SolverLog.flush();
         if (solved) {
             System.out.println(myProblem.toString());
             System.out.println("Time greedy solution found in " + runtime + " ms with " + myProblem.getBacktracksCount() + " backtracks");
@@ -314,12 +572,20 @@ public class Main {
             System.out.println(myProblem.toString());
             System.out.println("No solution:(");
         }
+        return solved;
     }    
 
+    /**
+     * Local search from the time greedy solution. The time limit includes the
+     * construction of the initial solution. The run is recorded to the metrics
+     * of the problem like a GRASP run.
+     */
     public static void localSearch() {
         long runtime = new Date().getTime();
-        myProblem.clear();
-        generateTimeGreedySolution(); //initial solution
+        long start = System.nanoTime();
+        generateTimeGreedySolution(timeLimit); //initial solution
+        SolverMetrics metrics = myProblem.getMetrics();
+        long searchStart = System.nanoTime();
 
         GapSolution bestSolution = myProblem.getSolution();
         GapSolution bestFeasible = myProblem.getSolution();
@@ -329,22 +595,36 @@ public class Main {
         System.out.println("Local search: Lower bound of GlobalCost is " + lowerBound);
         int idle_iter = 0;
         while (idle_iter < 1000) {
-            GapSolution newSolution = bestSolution.getBestNeighbour(false);
+            if (timeLimit > 0 && new Date().getTime() - runtime > timeLimit) {
+                break;
+            }
+            GapSolution newSolution = new GapSolution(bestSolution, settings);
+            Move move = bestSolution.getBestMove(false, myProblem.isParallelNeighbourhood(), new Move(0), metrics);
+            if (move.getType() != Move.NONE) {
+                metrics.recordImprovingMove();
+            }
+            move.apply(newSolution);
             if (newSolution.isFeasible() && newSolution.getGlobalCost() < bestCost) {
                 bestFeasible = new GapSolution(newSolution, settings);
                 bestCost = bestFeasible.getGlobalCost();
+                metrics.recordBest(System.nanoTime() - start);
                 if (bestCost == lowerBound) break;
             }
             if (newSolution.equals(bestSolution)) {
-                bestSolution.perturb();
+                bestSolution.perturb(myProblem.getRandom());
+                metrics.recordPerturbation();
                 idle_iter++;
             } else {
                 bestSolution = new GapSolution(newSolution, settings); //best solution this far
             }
         }
 
+        metrics.recordLocalSearch(System.nanoTime() - searchStart);
+        metrics.setBacktracks(myProblem.getBacktracksCount());
+        SolverMetrics.finishRun(metrics);
         myProblem.setSolution(bestFeasible);
         runtime = new Date().getTime() - runtime;
+        SolverLog.flush();
         System.out.println(myProblem.toString());
         System.out.println("Solution found with local search in " + runtime + " ms");
     }
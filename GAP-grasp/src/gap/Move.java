@@ -0,0 +1,162 @@
+package gap;
+
+/**
+ * Class describing a single local search step. The step is evaluated on the
+ * solution without constructing the neighbour and it is applied only if it is
+ * selected as the best one.
+ */
+public class Move {
+
+    /** No improving step was found. */
+    public static final int NONE = 0;
+    /** Move a job to another worker. */
+    public static final int JOB_MOVE = 1;
+    /** Swap workers assigned to a pair of jobs. */
+    public static final int JOB_SWAP = 2;
+    /** Swap all jobs between a pair of workers. */
+    public static final int WORKER_SWAP = 3;
+    private int type;
+    private int job;
+    /** Target worker of a job move, first worker of a worker swap. */
+    private int worker;
+    /** Second job of a job swap. */
+    private int otherJob;
+    /** Second worker of a worker swap. */
+    private int otherWorker;
+    /** Penalty of the solution after the step is applied. */
+    private double penalty;
+
+    /**
+     * Create an empty move.
+     * @param penalty Penalty of the current solution, i.e., the value which has
+     *  to be improved.
+     */
+    public Move(double penalty) {
+        reset(penalty);
+    }
+
+    public void reset(double penalty) {
+        this.type = NONE;
+        this.job = -1;
+        this.worker = -1;
+        this.otherJob = -1;
+        this.otherWorker = -1;
+        this.penalty = penalty;
+    }
+
+    /**
+     * Overwrite the move with a copy of another one.
+     */
+    public void copyFrom(Move move) {
+        this.type = move.type;
+        this.job = move.job;
+        this.worker = move.worker;
+        this.otherJob = move.otherJob;
+        this.otherWorker = move.otherWorker;
+        this.penalty = move.penalty;
+    }
+
+    public void setJobMove(int job, int worker, double penalty) {
+        this.type = JOB_MOVE;
+        this.job = job;
+        this.worker = worker;
+        this.otherJob = -1;
+        this.otherWorker = -1;
+        this.penalty = penalty;
+    }
+
+    public void setJobSwap(int job, int otherJob, double penalty) {
+        this.type = JOB_SWAP;
+        this.job = job;
+        this.worker = -1;
+        this.otherJob = otherJob;
+        this.otherWorker = -1;
+        this.penalty = penalty;
+    }
+
+    public void setWorkerSwap(int worker, int otherWorker, double penalty) {
+        this.type = WORKER_SWAP;
+        this.job = -1;
+        this.worker = worker;
+        this.otherJob = -1;
+        this.otherWorker = otherWorker;
+        this.penalty = penalty;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getJob() {
+        return job;
+    }
+
+    public int getWorker() {
+        return worker;
+    }
+
+    public int getOtherJob() {
+        return otherJob;
+    }
+
+    public int getOtherWorker() {
+        return otherWorker;
+    }
+
+    public double getPenalty() {
+        return penalty;
+    }
+
+    /**
+     * Select the better of two moves, the first one is preferred if their
+     * penalties are equal.
+     */
+    public static Move better(Move first, Move second) {
+        return (second.getPenalty() < first.getPenalty()) ? second : first;
+    }
+
+    /**
+     * Determines whether a step better than the current solution was found.
+     */
+    public boolean isImproving() {
+        return type != NONE;
+    }
+
+    /**
+     * Apply the step to the solution.
+     * @param gs Solution the move was evaluated on (or its copy).
+     * @return True if the resulting assignment is feasible, false otherwise.
+     */
+    public boolean apply(GapSolution gs) {
+        switch (type) {
+            case JOB_MOVE:
+                gs.moveJob(worker, job);
+                break;
+            case JOB_SWAP:
+                int worker1 = gs.getWorker(job);
+                gs.moveJob(gs.getWorker(otherJob), job);
+                gs.moveJob(worker1, otherJob);
+                break;
+            case WORKER_SWAP:
+                gs.swapWorkers(worker, otherWorker);
+                break;
+            default:
+                break;
+        }
+        return gs.isFeasible();
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case JOB_MOVE:
+                return "move job " + job + " to worker " + worker + ": " + penalty;
+            case JOB_SWAP:
+                return "swap jobs " + job + " and " + otherJob + ": " + penalty;
+            case WORKER_SWAP:
+                return "swap workers " + worker + " and " + otherWorker + ": " + penalty;
+            default:
+                return "none: " + penalty;
+        }
+    }
+}
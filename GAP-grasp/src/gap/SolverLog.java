@@ -0,0 +1,75 @@
+package gap;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.StreamHandler;
+
+/**
+ * Logging of the solver. The classes of the package log through
+ * java.util.logging to loggers named by the class, which are children of the
+ * logger "gap". configure() gives the "gap" logger a level and an
+ * AsyncLogHandler writing to the standard output, so that the solver threads
+ * do not wait for the output. Without it the records go to the root logger.
+ *
+ * Levels used by the solver:
+ * - INFO: fallbacks and forced backtracking of the generators;
+ * - FINE: improvements of the best cost of GRASP;
+ * - FINEST: the improved solutions, which are formatted only at this level.
+ */
+public class SolverLog {
+
+    public static final String NAME = "gap";
+    /** Maximum number of records waiting for the output. */
+    private static final int QUEUE_CAPACITY = 4096;
+    private static AsyncLogHandler handler;
+    /** Loggers are only weakly referenced by the LogManager, keep the configured one. */
+    private static Logger logger;
+
+    /**
+     * Log the messages of the solver from the given level up asynchronously
+     * to the standard output.
+     * @param level Minimum level of the logged records.
+     */
+    public static synchronized void configure(Level level) {
+        logger = Logger.getLogger(NAME);
+        if (handler == null) {
+            StreamHandler output = new StreamHandler(System.out, new Formatter() {
+
+                @Override
+                public String format(LogRecord record) {
+                    StringBuilder sb = new StringBuilder();
+                    if (record.getLevel() != Level.INFO) {
+                        sb.append(record.getLevel()).append(" [").append(handler.getPublishedThread()).append("] ");
+                    }
+                    sb.append(formatMessage(record)).append('\n');
+                    if (record.getThrown() != null) {
+                        StringWriter trace = new StringWriter();
+                        record.getThrown().printStackTrace(new PrintWriter(trace));
+                        sb.append(trace);
+                    }
+                    return sb.toString();
+                }
+            });
+            output.setLevel(Level.ALL);
+            handler = new AsyncLogHandler(output, QUEUE_CAPACITY);
+            handler.setLevel(Level.ALL);
+            logger.addHandler(handler);
+            logger.setUseParentHandlers(false);
+        }
+        logger.setLevel(level);
+    }
+
+    /**
+     * Wait until the queued records are written, so that they are not mixed
+     * with the following output.
+     */
+    public static synchronized void flush() {
+        if (handler != null) {
+            handler.flush();
+        }
+    }
+}
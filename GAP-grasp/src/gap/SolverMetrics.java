@@ -0,0 +1,325 @@
+package gap;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers of the solver: solution constructions, local searches,
+ * neighbourhood evaluations by the type of the step, improving moves,
+ * perturbations, backtracks and time to the best solution.
+ *
+ * Each run records to new metrics, each solver thread to the metrics of its
+ * own copy of the problem without synchronization. When a run ends, the
+ * metrics of the threads are merged into the metrics of the run, which keeps
+ * them as the per-thread metrics and replaces the metrics of the solved
+ * problem, and the run is added to the totals of the JVM.
+ * The totals and the last run are registered as JMX MBeans
+ * gap:type=SolverMetrics,name=total and gap:type=SolverMetrics,name=last by
+ * register(), which Main calls at startup, so that the slow first access to
+ * the platform MBean server is not a part of any run.
+ */
+public class SolverMetrics implements SolverMetricsMBean {
+
+    /** Names of the neighbourhoods, indexed by the Move type. */
+    private static final String[] NEIGHBOURHOODS = {"none", "jobMove", "jobSwap", "workerSwap"};
+    private static final SolverMetrics total = new SolverMetrics();
+    private static final SolverMetrics last = new SolverMetrics();
+    private static boolean registered = false;
+    private long runs;
+    private long constructions;
+    private long failedConstructions;
+    private long forcedBacktracks;
+    private long constructionNanos;
+    private long localSearches;
+    private long localSearchNanos;
+    /** Evaluated neighbours and evaluation time by the Move type. */
+    private long[] evaluations = new long[NEIGHBOURHOODS.length];
+    private long[] evaluationNanos = new long[NEIGHBOURHOODS.length];
+    private long improvingMoves;
+    private long perturbations;
+    private long backtracks;
+    /** Time from the start of the run to the best solution, -1 if there is none.
+     * Sum over the runs for the totals. */
+    private long timeToBestNanos = -1;
+    /** Metrics of the threads of a parallel run. */
+    private List<SolverMetrics> threads = new ArrayList<SolverMetrics>();
+
+    /**
+     * Record a construction of the initial solution.
+     * @param nanos Time of the construction.
+     * @param failed True if no feasible solution was constructed.
+     */
+    void recordConstruction(long nanos, boolean failed) {
+        constructions++;
+        constructionNanos += nanos;
+        if (failed) {
+            failedConstructions++;
+        }
+    }
+
+    void recordForcedBacktrack() {
+        forcedBacktracks++;
+    }
+
+    void recordLocalSearch(long nanos) {
+        localSearches++;
+        localSearchNanos += nanos;
+    }
+
+    /**
+     * Record an evaluation of a neighbourhood.
+     * @param type Move type of the neighbourhood.
+     * @param neighbours Number of neighbours evaluated.
+     * @param nanos Time of the evaluation.
+     */
+    void recordNeighbourhood(int type, long neighbours, long nanos) {
+        evaluations[type] += neighbours;
+        evaluationNanos[type] += nanos;
+    }
+
+    void recordImprovingMove() {
+        improvingMoves++;
+    }
+
+    void recordPerturbation() {
+        perturbations++;
+    }
+
+    /**
+     * Record a new best solution.
+     * @param elapsedNanos Time from the start of the run.
+     */
+    void recordBest(long elapsedNanos) {
+        timeToBestNanos = elapsedNanos;
+    }
+
+    void setBacktracks(long _backtracks) {
+        backtracks = _backtracks;
+    }
+
+    private void addCounters(SolverMetrics metrics) {
+        runs += metrics.runs;
+        constructions += metrics.constructions;
+        failedConstructions += metrics.failedConstructions;
+        forcedBacktracks += metrics.forcedBacktracks;
+        constructionNanos += metrics.constructionNanos;
+        localSearches += metrics.localSearches;
+        localSearchNanos += metrics.localSearchNanos;
+        for (int i = 0; i < evaluations.length; i++) {
+            evaluations[i] += metrics.evaluations[i];
+            evaluationNanos[i] += metrics.evaluationNanos[i];
+        }
+        improvingMoves += metrics.improvingMoves;
+        perturbations += metrics.perturbations;
+        backtracks += metrics.backtracks;
+    }
+
+    private void clearCounters() {
+        runs = 0;
+        constructions = 0;
+        failedConstructions = 0;
+        forcedBacktracks = 0;
+        constructionNanos = 0;
+        localSearches = 0;
+        localSearchNanos = 0;
+        evaluations = new long[NEIGHBOURHOODS.length];
+        evaluationNanos = new long[NEIGHBOURHOODS.length];
+        improvingMoves = 0;
+        perturbations = 0;
+        backtracks = 0;
+    }
+
+    /**
+     * Merge the metrics of a thread of the run, the thread must have finished.
+     * The best solution of the run is the last one found by any thread.
+     */
+    synchronized void addThread(SolverMetrics metrics) {
+        addCounters(metrics);
+        timeToBestNanos = Math.max(timeToBestNanos, metrics.timeToBestNanos);
+        threads.add(metrics);
+    }
+
+    /**
+     * Add a finished run to the totals of the JVM and make it the last run.
+     */
+    static void finishRun(SolverMetrics run) {
+        run.runs = 1;
+        synchronized (total) {
+            total.addCounters(run);
+            if (run.timeToBestNanos >= 0) {
+                total.timeToBestNanos = Math.max(total.timeToBestNanos, 0) + run.timeToBestNanos;
+            }
+        }
+        synchronized (last) {
+            last.clearCounters();
+            last.addCounters(run);
+            last.timeToBestNanos = run.timeToBestNanos;
+            last.threads = new ArrayList<SolverMetrics>(run.threads);
+        }
+    }
+
+    /**
+     * Register the totals and the last run as MBeans, once per JVM. Further
+     * calls do nothing.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(total, new ObjectName("gap:type=SolverMetrics,name=total"));
+            server.registerMBean(last, new ObjectName("gap:type=SolverMetrics,name=last"));
+        } catch (JMException ex) {
+            Logger.getLogger(SolverMetrics.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+
+    /**
+     * Totals of all runs in the JVM.
+     */
+    public static SolverMetrics getTotal() {
+        return total;
+    }
+
+    /**
+     * Metrics of the last finished run in the JVM.
+     */
+    public static SolverMetrics getLast() {
+        return last;
+    }
+
+    /**
+     * Metrics of the threads of a parallel run, empty for a sequential run.
+     */
+    public synchronized List<SolverMetrics> getThreads() {
+        return new ArrayList<SolverMetrics>(threads);
+    }
+
+    public synchronized long getRuns() {
+        return runs;
+    }
+
+    public synchronized long getConstructions() {
+        return constructions;
+    }
+
+    public synchronized long getFailedConstructions() {
+        return failedConstructions;
+    }
+
+    public synchronized long getForcedBacktracks() {
+        return forcedBacktracks;
+    }
+
+    public synchronized long getConstructionMillis() {
+        return constructionNanos / 1000000L;
+    }
+
+    public synchronized long getLocalSearches() {
+        return localSearches;
+    }
+
+    public synchronized long getLocalSearchMillis() {
+        return localSearchNanos / 1000000L;
+    }
+
+    /**
+     * Number of neighbours evaluated by the type of the step.
+     * @param type Move type.
+     */
+    public synchronized long getEvaluations(int type) {
+        return evaluations[type];
+    }
+
+    /**
+     * Neighbours evaluated per second of the evaluation time.
+     * @param type Move type.
+     */
+    public synchronized long getEvaluationsPerSecond(int type) {
+        return (evaluationNanos[type] == 0) ? 0 : (long) (evaluations[type] * 1e9 / evaluationNanos[type]);
+    }
+
+    public long getJobMoveEvaluationsPerSecond() {
+        return getEvaluationsPerSecond(Move.JOB_MOVE);
+    }
+
+    public long getJobSwapEvaluationsPerSecond() {
+        return getEvaluationsPerSecond(Move.JOB_SWAP);
+    }
+
+    public long getWorkerSwapEvaluationsPerSecond() {
+        return getEvaluationsPerSecond(Move.WORKER_SWAP);
+    }
+
+    public synchronized long getImprovingMoves() {
+        return improvingMoves;
+    }
+
+    public synchronized long getPerturbations() {
+        return perturbations;
+    }
+
+    public synchronized long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Time from the start of the run to the best solution, -1 if there is none.
+     * For the totals, the sum over the runs.
+     */
+    public synchronized long getTimeToBestMillis() {
+        return (timeToBestNanos < 0) ? -1 : timeToBestNanos / 1000000L;
+    }
+
+    public String getSummary() {
+        return toJson();
+    }
+
+    /**
+     * All metrics as a JSON object, with the metrics of the threads of a
+     * parallel run in the threads array. Times are in milliseconds.
+     */
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"runs\":").append(runs);
+        sb.append(",\"constructions\":").append(constructions);
+        sb.append(",\"failedConstructions\":").append(failedConstructions);
+        sb.append(",\"forcedBacktracks\":").append(forcedBacktracks);
+        sb.append(",\"constructionMillis\":").append(getConstructionMillis());
+        sb.append(",\"localSearches\":").append(localSearches);
+        sb.append(",\"localSearchMillis\":").append(getLocalSearchMillis());
+        sb.append(",\"neighbourhoods\":{");
+        for (int type = Move.JOB_MOVE; type < NEIGHBOURHOODS.length; type++) {
+            if (type > Move.JOB_MOVE) {
+                sb.append(',');
+            }
+            sb.append('"').append(NEIGHBOURHOODS[type]).append("\":{\"evaluations\":").append(evaluations[type]);
+            sb.append(",\"millis\":").append(evaluationNanos[type] / 1000000L);
+            sb.append(",\"perSecond\":").append(getEvaluationsPerSecond(type)).append('}');
+        }
+        sb.append('}');
+        sb.append(",\"improvingMoves\":").append(improvingMoves);
+        sb.append(",\"perturbations\":").append(perturbations);
+        sb.append(",\"backtracks\":").append(backtracks);
+        sb.append(",\"timeToBestMillis\":").append(getTimeToBestMillis());
+        if (!threads.isEmpty()) {
+            sb.append(",\"threads\":[");
+            for (int i = 0; i < threads.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(threads.get(i).toJson());
+            }
+            sb.append(']');
+        }
+        return sb.append('}').toString();
+    }
+}
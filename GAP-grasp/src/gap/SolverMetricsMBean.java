@@ -0,0 +1,40 @@
+package gap;
+
+/**
+ * JMX view of SolverMetrics. Times are in milliseconds.
+ */
+public interface SolverMetricsMBean {
+
+    public long getRuns();
+
+    public long getConstructions();
+
+    public long getFailedConstructions();
+
+    public long getForcedBacktracks();
+
+    public long getConstructionMillis();
+
+    public long getLocalSearches();
+
+    public long getLocalSearchMillis();
+
+    public long getJobMoveEvaluationsPerSecond();
+
+    public long getJobSwapEvaluationsPerSecond();
+
+    public long getWorkerSwapEvaluationsPerSecond();
+
+    public long getImprovingMoves();
+
+    public long getPerturbations();
+
+    public long getBacktracks();
+
+    public long getTimeToBestMillis();
+
+    /**
+     * All metrics as a JSON object, see SolverMetrics.toJson().
+     */
+    public String getSummary();
+}
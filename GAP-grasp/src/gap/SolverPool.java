@@ -0,0 +1,115 @@
+package gap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reusable pool of solver threads for parallel GRASP. The threads are created
+ * once and shared by all problems solved through the pool, each solve() runs
+ * one task per thread on its own copy of the problem. Tasks of the same problem
+ * share the iteration budget and the incumbent through a GraspContext.
+ */
+public class SolverPool {
+
+    private static final AtomicInteger poolCount = new AtomicInteger(0);
+    /** Number of threads and number of tasks of each problem */
+    private int parallelism;
+    private ExecutorService executor;
+
+    public SolverPool(int _parallelism) {
+        parallelism = Math.max(_parallelism, 1);
+        final int poolId = poolCount.incrementAndGet();
+        executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+
+            private AtomicInteger threadCount = new AtomicInteger(0);
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "gap-solver-" + poolId + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Solve the problem by GRASP with the default parameters.
+     */
+    public CompletableFuture<GapSolution> solve(GapProblem problem) {
+        return solve(problem, problem.getDefaultGRASPIterations(), .5, 0);
+    }
+
+    /**
+     * Solve the problem by GRASP running on all threads of the pool.
+     * Cancelling the returned future stops the search.
+     * @param problem Problem to solve, it is not modified until the search ends.
+     * @param iterations Number of iterations shared by all threads.
+     * @param rclRatio Size of RCL compared to number of the available values.
+     * @param timeLimit Time limit in milliseconds, no limit if not positive. It
+     *  includes the setup of the search, e.g. building the JobIndex.
+     * @return The best solution found, null if the problem is infeasible or no
+     *  solution was found in time. When the time limit passes, the best solution
+     *  found so far is returned.
+     */
+    public CompletableFuture<GapSolution> solve(final GapProblem problem, int iterations,
+            final double rclRatio, long timeLimit) {
+        long start = System.nanoTime();
+        final GraspContext context = new GraspContext(iterations, problem.getCostLowerBound(), problem.getRandom().split());
+        context.setTrace(problem.getTrace());
+        if (timeLimit > 0) {
+            /** Only the remaining part of the budget is left to the iterations. */
+            context.setTimeLimit(Math.max(timeLimit - (System.nanoTime() - start) / 1000000L, 0));
+        }
+        final GapProblem[] copies = new GapProblem[parallelism];
+        final List<CompletableFuture<Boolean>> tasks = new ArrayList<CompletableFuture<Boolean>>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            final GapProblem copy = new GapProblem(problem);
+            copies[i] = copy;
+            tasks.add(CompletableFuture.supplyAsync(() -> copy.generateGRASPSolution(context, rclRatio), executor));
+        }
+        final CompletableFuture<GapSolution> result = new CompletableFuture<GapSolution>();
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[parallelism])).whenComplete((ignored, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(ex);
+                return;
+            }
+            boolean feasible = true;
+            /** The copies are created for this run, so their metrics are of this run only. */
+            SolverMetrics run = new SolverMetrics();
+            for (int i = 0; i < parallelism; i++) {
+                problem.backtracksCount += copies[i].getBacktracksCount();
+                copies[i].getMetrics().setBacktracks(copies[i].getBacktracksCount());
+                run.addThread(copies[i].getMetrics());
+                feasible &= tasks.get(i).join();
+            }
+            problem.setMetrics(run);
+            SolverMetrics.finishRun(run);
+            result.complete(feasible ? context.getIncumbent() : null);
+        });
+        /** Stop the remaining tasks when the result is cancelled or fails. */
+        result.whenComplete((solution, ex) -> context.stop());
+        return result;
+    }
+
+    /**
+     * Stop accepting new problems, the running ones are finished.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Stop accepting new problems and interrupt the threads.
+     */
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+}
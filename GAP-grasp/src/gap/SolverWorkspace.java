@@ -0,0 +1,41 @@
+package gap;
+
+/**
+ * Preallocated buffers of one solver thread. Each thread works on its own copy
+ * of the problem, which owns a workspace, so the buffers are reused by all
+ * solution generations and local searches of the thread and the GRASP
+ * iterations do not allocate in the steady state.
+ */
+public class SolverWorkspace {
+
+    /** Domains of feasible assignments of workers to jobs with their undo trail. */
+    final JobDomains jobDomains;
+    /** Trail marks of the assignments, used to restore the domains when backtracking. */
+    final int[] marks;
+    /** Order of the jobs in the GRASP generator. */
+    final int[] jobsOrder;
+    /** RCL of the GRASP generator, jobs of the peckish generator. */
+    final IntArrayList candidates;
+    /** Solution built by the GRASP generator. */
+    final GapSolution start;
+    /** Current solution of the local search and its best neighbour, the local
+     * search exchanges them in each step. */
+    final GapSolution current;
+    final GapSolution neighbour;
+    /** The best feasible solution found by the local search. */
+    final GapSolution bestFeasible;
+    /** Step to the best neighbour. */
+    final Move move;
+
+    public SolverWorkspace(int jobsCount, int workersCount, GapSettings settings) {
+        jobDomains = new JobDomains(jobsCount, workersCount);
+        marks = new int[jobsCount];
+        jobsOrder = new int[jobsCount];
+        candidates = new IntArrayList(Math.max(jobsCount, workersCount));
+        start = new GapSolution(jobsCount, workersCount, settings);
+        current = new GapSolution(jobsCount, workersCount, settings);
+        neighbour = new GapSolution(jobsCount, workersCount, settings);
+        bestFeasible = new GapSolution(jobsCount, workersCount, settings);
+        move = new Move(0);
+    }
+}